@@ -0,0 +1,93 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+
+//Асинхронный обработчик логов: записи помещаются в ограниченную очередь,
+//а целевой обработчик (по умолчанию FileHandler) вызывается из фонового потока
+
+public class AsyncHandler extends Handler {
+    private final static String PREFIX = AsyncHandler.class.getName();  // - префикс свойств в log.config
+    private final static String DEFAULT_TARGET = "java.util.logging.FileHandler";   // - целевой обработчик по умолчанию
+    private final static int DEFAULT_CAPACITY = 8192;   // - емкость очереди по умолчанию
+    private final static long POLL_MILLIS = 100;    // - период проверки признака остановки
+
+    private final ArrayBlockingQueue<LogRecord> queue;  // - очередь записей
+    private final Handler target;   // - целевой обработчик
+    private final Thread worker;    // - фоновый поток записи
+    private final AtomicLong dropped = new AtomicLong();    // - количество отброшенных записей
+    private volatile boolean closed;    // - признак закрытия обработчика
+
+    //Конструктор, вызываемый LogManager; параметры читаются из log.config
+
+    public AsyncHandler() throws ReflectiveOperationException {
+        LogManager manager = LogManager.getLogManager();
+        String targetName = manager.getProperty(PREFIX + ".target");
+        String capacity = manager.getProperty(PREFIX + ".capacity");
+        String level = manager.getProperty(PREFIX + ".level");
+        target = (Handler) ClassLoader.getSystemClassLoader()
+                .loadClass(targetName != null ? targetName.trim() : DEFAULT_TARGET).getDeclaredConstructor().newInstance();
+        queue = new ArrayBlockingQueue<LogRecord>(capacity != null ? Integer.parseInt(capacity.trim()) : DEFAULT_CAPACITY);
+        setLevel(level != null ? Level.parse(level.trim()) : Level.ALL);
+        worker = new Thread(this::drain, "async-log");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    //Помещение записи в очередь; при переполнении отбрасываются только записи ниже WARNING
+
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record))
+            return;
+        record.getSourceClassName();    // - определение источника записи в вызывающем потоке
+        if (queue.offer(record))
+            return;
+        if (record.getLevel().intValue() < Level.WARNING.intValue()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        try {
+            queue.put(record);  // - предупреждения и ошибки не теряются
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //Цикл фонового потока: передача записей целевому обработчику
+
+    private void drain() {
+        try {
+            while (!closed || !queue.isEmpty()) {
+                LogRecord record = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (record != null)
+                    target.publish(record);
+                else
+                    target.flush();
+            }
+        } catch (InterruptedException e) {
+            reportError("Async log worker interrupted", e, ErrorManager.GENERIC_FAILURE);
+        }
+    }
+
+    public void flush() {
+        target.flush();
+    }
+
+    //Закрытие обработчика с записью всех оставшихся в очереди записей
+
+    public void close() {
+        closed = true;
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dropped.get() > 0)
+            target.publish(new LogRecord(Level.WARNING, dropped.get() + " log records dropped"));
+        target.close();
+    }
+}
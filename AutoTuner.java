@@ -0,0 +1,109 @@
+import java.util.logging.Logger;
+
+//Класс подбора размера порции восхождением по пропускной способности: размер удваивается (или уменьшается вдвое),
+//пока это увеличивает МБ/с, затем фиксируется лучший; небольшие объемы данных не выходят за первое измерение
+
+class AutoTuner {
+    public final static String AUTO = "auto";   // - значение токена размера для автоматического подбора
+    public final static int DEFAULT_SIZE = 64 << 10;    // - начальный размер
+    public final static int DEFAULT_MIN = 4 << 10;  // - нижняя граница размера по умолчанию
+    public final static int DEFAULT_MAX = 4 << 20;  // - верхняя граница размера по умолчанию
+
+    private final static double IMPROVEMENT = 1.05; // - прирост пропускной способности, считающийся улучшением
+    private final static long MIN_WINDOW = 8L << 20;    // - наименьший объем данных одного измерения
+    private final static int WINDOW_CHUNKS = 16;    // - наименьшее количество порций одного измерения
+    private final static double MEGABYTE = 1 << 20;    // - количество байтов в мегабайте
+    private final static double NANOS_PER_SECOND = 1e9; // - количество наносекунд в секунде
+
+    private final Logger logger;    // - логгер
+    private final String token; // - имя подбираемого токена для лога
+    private final int min;  // - нижняя граница размера
+    private final int max;  // - верхняя граница размера
+
+    private int size;   // - текущий размер
+    private int bestSize;   // - лучший из измеренных размеров
+    private double bestRate;    // - пропускная способность при лучшем размере, МБ/с
+    private boolean growing = true; // - направление поиска: удвоение или уменьшение вдвое
+    private boolean moved;  // - в текущем направлении уже было улучшение
+    private boolean reversed;   // - направление поиска уже менялось
+    private boolean done;   // - размер выбран
+    private long windowBytes;   // - объем данных текущего измерения
+    private long windowNanos;   // - время текущего измерения
+
+    //Конструктор
+
+    public AutoTuner(Logger logger, String token, int size, int min, int max) {
+        this.logger = logger;
+        this.token = token;
+        this.min = min;
+        this.max = max;
+        this.size = Math.max(min, Math.min(max, size));
+    }
+
+    //Метод, возвращающий текущий размер
+
+    public int size() {
+        return size;
+    }
+
+    //Следующий размер в текущем направлении, либо 0 при выходе за границы
+
+    private int next(int from) {
+        long candidate = growing ? (long) from * 2 : from / 2;
+        return candidate >= min && candidate <= max ? (int) candidate : 0;
+    }
+
+    //Фиксация лучшего размера
+
+    private int finish() {
+        done = true;
+        size = bestSize;
+        logger.info(token + " auto: chose " + size + String.format(" (%.1f MB/s)", bestRate));
+        return size;
+    }
+
+    //Отказ от подбора: текущий размер сохраняется до конца работы
+
+    public void keep(String reason) {
+        if (done)
+            return;
+        done = true;
+        logger.info(token + " auto: " + reason + ", keeping " + size);
+    }
+
+    //Учет обработанных байтов и затраченного времени; возвращает размер для следующей порции
+
+    public int observe(long bytes, long nanos) {
+        if (done)
+            return size;
+        windowBytes += bytes;
+        windowNanos += nanos;
+        if (windowBytes < Math.max(MIN_WINDOW, (long) WINDOW_CHUNKS * size) || windowNanos <= 0)
+            return size;
+        double rate = windowBytes / MEGABYTE / (windowNanos / NANOS_PER_SECOND);
+        windowBytes = 0;
+        windowNanos = 0;
+        logger.fine(token + " auto: " + size + String.format(" - %.1f MB/s", rate));
+        if (bestRate == 0 || rate > bestRate * IMPROVEMENT) {   // - улучшение: шаг дальше в том же направлении
+            if (bestRate != 0)
+                moved = true;
+            bestSize = size;
+            bestRate = rate;
+        } else if (moved || reversed)   // - ухудшение после серии улучшений или в обоих направлениях
+            return finish();
+        else {  // - первый шаг неудачен: поиск в обратном направлении
+            growing = !growing;
+            reversed = true;
+        }
+        int candidate = next(bestSize);
+        if (candidate == 0 && !moved && !reversed) {    // - граница в текущем направлении: поиск в обратном
+            growing = !growing;
+            reversed = true;
+            candidate = next(bestSize);
+        }
+        if (candidate == 0)
+            return finish();
+        size = candidate;
+        return size;
+    }
+}
@@ -1,92 +1,168 @@
-import ru.spbstu.pipeline.BaseGrammar;
-import ru.spbstu.pipeline.IConfigurable;
-import ru.spbstu.pipeline.RC;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.logging.Logger;
-
-//Класс, вызывающий парсер конфига, а также проводящий семантическую проверку содежимого файла
-
-public class BaseSemantics extends BaseGrammar implements IConfigurable {
-    private static Logger LOGGER;   // - ссылка на логгер
-
-    protected final static int wordsNum = 2;    // - значение количества слов в стоке
-
-    private String configFileName;  // - имя конфигурационного файла
-    protected ArrayList<ArrayList<String>> data;  // - контейнер разделенных на слова строк
-    protected Map<String, String> map;    // - словарь, хранящий иформацию: токен - значение
-
-    //Конструктор
-
-    public BaseSemantics(Logger logger, String[] tokens) {
-        super(tokens);  // - вызов конструктора абстрактного родительского класса
-        LOGGER = logger;  // - установка соответствующего логгера
-    }
-
-    //Установка имени файла конфига
-
-    public RC setConfig(String configFileName) {
-        this.configFileName = configFileName;
-        LOGGER.info("Config file name is set");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Метод, вызывающий парсер конфига
-
-    public RC readConfig() {
-        Parser parser = new Parser(LOGGER); // - создание экземпляра парсера
-        parser.setConfig(configFileName);   // - установка имени конфига для класса парсера
-        parser.setDelimiter(delimiter());   // - установка разделителя
-        RC code = parser.run(); // - запуск чтения и парсинга файла
-        if (code != RC.CODE_SUCCESS)
-            return code;
-        data = parser.getStrings(); // - получение строк, разделенных на слова
-        LOGGER.info("Config file read successfully");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Метод, заполняющий словарь данными
-
-    protected RC fillMap(ArrayList<String> arr) {
-        if (arr.size() != wordsNum) {   // - проверка на наличие токена и одного значения в строке
-            LOGGER.severe("Token has more than one value");
-            return RC.CODE_CONFIG_SEMANTIC_ERROR;
-        }
-        map.put(arr.get(0), arr.get(wordsNum - 1)); // - занесение соответствующего токена и его значения в словарь
-        return RC.CODE_SUCCESS;
-    }
-
-    //Метод, производящий семантический анализ содержимого конфигурационного файла
-
-    public RC run() {
-        if (data.size() != numberTokens()) {    // - проверка колчества строк в файле
-            LOGGER.severe("Wrong number of tokens");
-            return RC.CODE_CONFIG_SEMANTIC_ERROR;
-        }
-        map = new HashMap<String, String>();    // - создание словаря для хранения данных
-        for (int i = 0; i < numberTokens(); i++) {
-            for (ArrayList<String> arr : data) {
-                if (arr.get(0).equals(token(i))) {
-                    RC code = fillMap(arr);
-                    if (code != RC.CODE_SUCCESS)
-                        return code;
-                    break;
-                }
-            }
-        }
-        if (map.size() != numberTokens()) { // - соотношение количества требуемых и прочитанных токенов
-            LOGGER.severe("Invalid token");
-            return RC.CODE_CONFIG_SEMANTIC_ERROR;
-        }
-        LOGGER.info("Config file tokens are valid");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Метод, возвращающий словарь
-
-    public Map<String, String> getMap() {
-        return map;
-    }
-}
+import ru.spbstu.pipeline.BaseGrammar;
+import ru.spbstu.pipeline.IConfigurable;
+import ru.spbstu.pipeline.RC;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+//Разобранный конфиг вместе со временем изменения файла, по которому он получен
+
+class CachedConfig {
+    final FileTime modified;    // - время изменения файла конфига
+    final ArrayList<ArrayList<String>> data;    // - строки конфига, разделенные на слова
+
+    //Конструктор
+
+    CachedConfig(FileTime modified, ArrayList<ArrayList<String>> data) {
+        this.modified = modified;
+        this.data = data;
+    }
+}
+
+//Класс, вызывающий парсер конфига, а также проводящий семантическую проверку содежимого файла
+
+public class BaseSemantics extends BaseGrammar implements IConfigurable {
+    private static Logger LOGGER;   // - ссылка на логгер
+
+    protected final static int wordsNum = 2;    // - значение количества слов в стоке
+
+    //Разобранные конфиги, общие для всех конвейеров процесса: файл читается и делится на слова заново
+    //только после изменения
+
+    private final static Map<String, CachedConfig> cache = new ConcurrentHashMap<String, CachedConfig>();
+
+    private String[] optionalTokens;    // - необязательные токены конфига
+    private String configFileName;  // - имя конфигурационного файла
+    protected ArrayList<ArrayList<String>> data;  // - контейнер разделенных на слова строк
+    protected Map<String, String> map;    // - словарь, хранящий иформацию: токен - значение
+
+    //Конструктор
+
+    public BaseSemantics(Logger logger, String[] tokens) {
+        super(tokens);  // - вызов конструктора абстрактного родительского класса
+        LOGGER = logger;  // - установка соответствующего логгера
+        optionalTokens = new String[0];
+    }
+
+    //Конструктор с поддержкой необязательных токенов
+
+    public BaseSemantics(Logger logger, String[] tokens, String[] optionalTokens) {
+        this(logger, tokens);
+        this.optionalTokens = optionalTokens;
+    }
+
+    //Установка имени файла конфига
+
+    public RC setConfig(String configFileName) {
+        this.configFileName = configFileName;
+        LOGGER.info("Config file name is set");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод, вызывающий парсер конфига
+
+    public RC readConfig() {
+        FileTime modified = modifiedTime(configFileName);
+        CachedConfig cached = cache.get(configFileName);
+        if (cached != null && cached.modified.equals(modified)) {  // - файл не изменился с момента разбора
+            data = cached.data;
+            LOGGER.info("Config file taken from cache");
+            return RC.CODE_SUCCESS;
+        }
+        RC code = readFile();
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        if (modified != null)
+            cache.put(configFileName, new CachedConfig(modified, data));
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод, вызывающий парсер без обращения к кэшу; используется для файлов данных (контрольных сумм,
+    //контрольных точек), которые перезаписываются при каждом запуске и не должны копиться в кэше
+
+    public RC readFile() {
+        Parser parser = new Parser(LOGGER); // - создание экземпляра парсера
+        parser.setConfig(configFileName);   // - установка имени конфига для класса парсера
+        parser.setDelimiter(delimiter());   // - установка разделителя
+        RC code = parser.run(); // - запуск чтения и парсинга файла
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        data = parser.getStrings(); // - получение строк, разделенных на слова
+        LOGGER.info("Config file read successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Время изменения файла конфига, либо null, если файл недоступен
+
+    public static FileTime modifiedTime(String configFileName) {
+        try {
+            return Files.getLastModifiedTime(Paths.get(configFileName));
+        } catch (IOException | InvalidPathException e) {  // - ошибку доступа к файлу сообщит парсер
+            return null;
+        }
+    }
+
+    //Метод, заполняющий словарь данными
+
+    protected RC fillMap(ArrayList<String> arr) {
+        if (arr.size() != wordsNum) {   // - проверка на наличие токена и одного значения в строке
+            LOGGER.severe("Token has more than one value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        map.put(arr.get(0), arr.get(wordsNum - 1)); // - занесение соответствующего токена и его значения в словарь
+        return RC.CODE_SUCCESS;
+    }
+
+    //Проверка, является ли слово одним из токенов конфига
+
+    protected boolean isToken(String word) {
+        for (int i = 0; i < numberTokens(); i++) {
+            if (token(i).equals(word))
+                return true;
+        }
+        for (String optional : optionalTokens) {
+            if (optional.equals(word))
+                return true;
+        }
+        return false;
+    }
+
+    //Метод, производящий семантический анализ содержимого конфигурационного файла
+
+    public RC run() {
+        map = new HashMap<String, String>();    // - создание словаря для хранения данных
+        for (ArrayList<String> arr : data) {
+            if (arr.isEmpty())  // - пропуск пустых строк
+                continue;
+            if (!isToken(arr.get(0)) || map.containsKey(arr.get(0))) {  // - неизвестный или повторяющийся токен
+                LOGGER.severe("Invalid token");
+                return RC.CODE_CONFIG_SEMANTIC_ERROR;
+            }
+            RC code = fillMap(arr);
+            if (code != RC.CODE_SUCCESS)
+                return code;
+        }
+        for (int i = 0; i < numberTokens(); i++) {  // - проверка наличия всех обязательных токенов
+            if (!map.containsKey(token(i))) {
+                LOGGER.severe("Wrong number of tokens");
+                return RC.CODE_CONFIG_SEMANTIC_ERROR;
+            }
+        }
+        LOGGER.info("Config file tokens are valid");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод, возвращающий словарь
+
+    public Map<String, String> getMap() {
+        return map;
+    }
+}
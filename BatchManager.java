@@ -0,0 +1,269 @@
+import ru.spbstu.pipeline.IConfigurable;
+import ru.spbstu.pipeline.RC;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+//Расширенный класс семантического разбора для пакетного конфига: токен задания может повторяться
+
+class BatchSemantics extends BaseSemantics {
+    private static Logger LOGGER;   // - ссылка на логгер
+
+    private final static int jobWordsNum = 3;   // - количество слов в строке задания
+
+    private String jobToken;    // - токен задания
+    private List<String[]> jobs = new ArrayList<String[]>();    // - пары вход - выход
+
+    //Конструктор
+
+    public BatchSemantics(Logger logger, String[] tokens, String[] optionalTokens, String jobToken) {
+        super(logger, tokens, optionalTokens);
+        LOGGER = logger;
+        this.jobToken = jobToken;
+    }
+
+    //Функция, собирающая все строки заданий отдельно от остальных токенов
+
+    protected RC fillMap(ArrayList<String> arr) {
+        if (!arr.get(0).equals(jobToken))
+            return super.fillMap(arr);
+        if (arr.size() != jobWordsNum) {    // - задание состоит из входа и выхода
+            LOGGER.severe("Job must have input and output");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        jobs.add(new String[]{arr.get(1), arr.get(2)});
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод, возвращающий задания
+
+    public List<String[]> getJobs() {
+        return jobs;
+    }
+}
+
+//Результат одного задания пакета, по которому строится строка отчета
+
+class JobResult {
+    final String input; // - вход задания
+    final String output;    // - выход задания
+    final RC code;  // - код возврата конвейера задания
+    final long bytes;   // - количество записанных байтов
+    final double millis;    // - время выполнения задания
+
+    //Конструктор
+
+    JobResult(String input, String output, RC code, long bytes, double millis) {
+        this.input = input;
+        this.output = output;
+        this.code = code;
+        this.bytes = bytes;
+        this.millis = millis;
+    }
+}
+
+//Класс пакетного менеджера: множество пар вход - выход обрабатывается в одном процессе ограниченным пулом потоков
+
+public class BatchManager implements IConfigurable {
+    private final static Logger LOGGER = Logger.getLogger(BatchManager.class.getName());   // - создание логгера
+
+    private final static String[] tokens = {"MANAGER"}; // - токен конфига менеджера-шаблона
+    private final static String[] optionalTokens = {"WORKERS", "REPORT", "JOB"};    // - необязательные токены пакетного конфига
+    private final static String jobToken = "JOB";   // - токен задания: вход (файл или шаблон glob) и выход (файл или каталог)
+
+    private enum tokenInd {MANAGER} // - индекс токена
+
+    private enum optionalTokenInd {WORKERS, REPORT} // - индексы необязательных токенов
+
+    private final static String GLOB_CHARS = "*?[{";    // - символы шаблона glob
+    private final static double MEGABYTE = 1 << 20; // - количество байтов в мегабайте
+    private final static double NANOS_PER_MILLI = 1e6;  // - количество наносекунд в миллисекунде
+
+    private String configFileName;  // - имя пакетного конфига
+    private String managerConfig;   // - конфиг менеджера-шаблона
+    private int workers;    // - количество потоков пула
+    private String report;  // - файл итогового отчета
+    private List<String[]> jobs;    // - задания после раскрытия шаблонов
+
+    //Метод, проверящий и обрабатывающий значения токенов в конфиге
+
+    private RC dataValidation(BatchSemantics sem) {
+        managerConfig = sem.getMap().get(tokens[tokenInd.MANAGER.ordinal()]);
+        report = sem.getMap().get(optionalTokens[optionalTokenInd.REPORT.ordinal()]);
+        String value = sem.getMap().get(optionalTokens[optionalTokenInd.WORKERS.ordinal()]);
+        workers = Runtime.getRuntime().availableProcessors();
+        try {   //Преобразовние строки в целое значение
+            if (value != null)
+                workers = Integer.parseInt(value);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.WORKERS.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (workers < 1) {  // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.WORKERS.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        jobs = new ArrayList<String[]>();
+        for (String[] job : sem.getJobs()) {
+            RC code = expand(job[0], job[1]);
+            if (code != RC.CODE_SUCCESS)
+                return code;
+        }
+        if (jobs.isEmpty()) {
+            LOGGER.severe("There are no jobs");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        LOGGER.info(jobs.size() + " jobs, " + workers + " workers");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Раскрытие задания: шаблон glob дает по заданию на каждый файл, выход при этом трактуется как каталог,
+    //в котором сохраняются подкаталоги найденных файлов относительно каталога шаблона
+
+    private RC expand(String input, String output) {
+        int glob = -1;
+        for (char c : GLOB_CHARS.toCharArray()) {
+            int i = input.indexOf(c);
+            if (i >= 0 && (glob < 0 || i < glob))
+                glob = i;
+        }
+        if (glob < 0) { // - обычная пара файлов
+            jobs.add(new String[]{input, output});
+            return RC.CODE_SUCCESS;
+        }
+        int slash = Math.max(input.lastIndexOf('/', glob), input.lastIndexOf('\\', glob));
+        Path dir = Paths.get(slash < 0 ? "." : input.substring(0, slash + 1));
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input.substring(slash + 1));
+        List<Path> matched = new ArrayList<Path>();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.filter(Files::isRegularFile).filter(path -> matcher.matches(dir.relativize(path))).sorted().forEach(matched::add);
+        } catch (IOException e) {
+            LOGGER.severe("Couldn't list " + dir);
+            return RC.CODE_INVALID_INPUT_STREAM;
+        }
+        for (Path path : matched) {
+            Path target = Paths.get(output, dir.relativize(path).toString());   // - одноименные файлы разных подкаталогов не совпадают
+            try {
+                Files.createDirectories(target.getParent());
+            } catch (IOException e) {
+                LOGGER.severe("Couldn't create " + target.getParent());
+                return RC.CODE_INVALID_OUTPUT_STREAM;
+            }
+            jobs.add(new String[]{path.toString(), target.toString()});
+        }
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод чтения и обработки пакетного конфига
+
+    private RC readConfig() {
+        BatchSemantics sem = new BatchSemantics(LOGGER, tokens, optionalTokens, jobToken);
+        sem.setConfig(configFileName);
+        RC code = sem.readConfig(); // - чтение и парсинг конфига
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        code = sem.run();   // - проведение семантического анализа
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        code = dataValidation(sem);
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        LOGGER.info("Batch config file read successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод установки имени конфига, а также работы с ним
+
+    public RC setConfig(String configFileName) {
+        if (configFileName == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        this.configFileName = configFileName;
+        LOGGER.info("Config file name is set");
+        return readConfig();
+    }
+
+    //Выполнение одного задания на собственном конвейере
+
+    private JobResult runJob(String input, String output) {
+        long start = System.nanoTime();
+        Manager manager = new Manager();
+        RC code = manager.setConfig(managerConfig);
+        if (code == RC.CODE_SUCCESS)
+            code = manager.setInputOutput(input, output);
+        if (code == RC.CODE_SUCCESS)
+            code = manager.setPipeline();
+        if (code == RC.CODE_SUCCESS)
+            code = manager.run();
+        else
+            manager.release();  // - потоки конвейера, который не запустился
+        long bytes = manager.getMetrics() != null ? manager.getMetrics().getBytesWritten() : 0;
+        return new JobResult(input, output, code, bytes, (System.nanoTime() - start) / NANOS_PER_MILLI);
+    }
+
+    //Строка отчета по результату задания
+
+    private static String format(JobResult result) {
+        return String.format("%s\t%s\t%s\t%d\t%.1f\t%.2f", result.input, result.output, result.code, result.bytes, result.millis,
+                result.millis > 0 ? result.bytes / MEGABYTE / (result.millis / 1e3) : 0);
+    }
+
+    //Метод, запускающий все задания на пуле потоков и записывающий итоговый отчет
+
+    public RC run() {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<JobResult>> results = new ArrayList<Future<JobResult>>();
+        for (String[] job : jobs)
+            results.add(pool.submit(() -> runJob(job[0], job[1])));
+        pool.shutdown();
+
+        RC code = RC.CODE_SUCCESS;
+        int failed = 0;
+        List<String> lines = new ArrayList<String>();
+        lines.add("INPUT\tOUTPUT\tRC\tBYTES\tMS\tMB/S");
+        for (Future<JobResult> result : results) {
+            try {
+                JobResult job = result.get();
+                if (job.code != RC.CODE_SUCCESS) {
+                    failed++;
+                    code = RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+                }
+                lines.add(format(job));
+            } catch (InterruptedException | ExecutionException e) { // - задание не завершилось
+                failed++;
+                code = RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+                lines.add("job failed: " + e);
+                if (e instanceof InterruptedException)
+                    Thread.currentThread().interrupt();
+            }
+        }
+        lines.add(String.format("Total: %d jobs, %d failed, %.1f ms", jobs.size(), failed, (System.nanoTime() - start) / NANOS_PER_MILLI));
+        LOGGER.info("Batch report:\n" + String.join("\n", lines));
+
+        if (report != null) {   //Запись итогового отчета в файл
+            try (PrintWriter writer = new PrintWriter(report)) {
+                for (String line : lines)
+                    writer.println(line);
+            } catch (IOException e) {
+                LOGGER.severe("Couldn't write batch report");
+                return RC.CODE_FAILED_TO_WRITE;
+            }
+        }
+        return code;
+    }
+}
@@ -0,0 +1,216 @@
+import ru.spbstu.pipeline.RC;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+//Класс семантической обработки файла контрольных сумм: строки блоков собираются отдельно от остальных токенов
+
+class ChecksumSemantics extends BaseSemantics {
+    private static Logger LOGGER;   // - ссылка на логгер
+
+    private final static int blockWordsNum = 3; // - количество слов в строке блока
+
+    private String blockToken;  // - токен блока
+    private List<String[]> blocks = new ArrayList<String[]>();  // - пары номер - сумма
+
+    //Конструктор
+
+    public ChecksumSemantics(Logger logger, String[] tokens, String blockToken) {
+        super(logger, tokens);
+        LOGGER = logger;
+        this.blockToken = blockToken;
+    }
+
+    //Функция, собирающая строки блоков отдельно от остальных токенов
+
+    protected RC fillMap(ArrayList<String> arr) {
+        if (!arr.get(0).equals(blockToken))
+            return super.fillMap(arr);
+        if (arr.size() != blockWordsNum) {  // - блок состоит из номера и суммы
+            LOGGER.severe("Block must have index and checksum");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        blocks.add(new String[]{arr.get(1), arr.get(2)});
+        return RC.CODE_SUCCESS;
+    }
+
+    //Проверка, является ли слово одним из токенов конфига
+
+    protected boolean isToken(String word) {
+        return word.equals(blockToken) || super.isToken(word);
+    }
+
+    //Метод, возвращающий строки блоков
+
+    public List<String[]> getBlocks() {
+        return blocks;
+    }
+}
+
+//Класс контрольных сумм CRC32C потока данных: сумма каждого блока фиксированного размера и всего потока;
+//суммы сохраняются в файл рядом с данными и сравниваются поблочно, поэтому видно, какие блоки изменились
+
+class BlockChecksum {
+    private static Logger LOGGER;   // - ссылка на логгер
+
+    private final static String[] tokens = {"BLOCK_SIZE", "LENGTH", "FILE_CRC"};    // - токены файла контрольных сумм
+
+    private enum tokenInd {BLOCK_SIZE, LENGTH, FILE_CRC}    // - индексы токенов
+
+    private final static String blockToken = "BLOCK";   // - токен суммы блока
+
+    public final static String SUFFIX = ".crc32c";  // - расширение файла контрольных сумм
+    public final static int DEFAULT_BLOCK_SIZE = 1 << 20;   // - размер блока по умолчанию
+
+    private final int blockSize;    // - размер блока
+    private final CRC32C block = new CRC32C();  // - сумма текущего блока
+    private final CRC32C file = new CRC32C();   // - сумма всего потока
+    private final List<Integer> blocks = new ArrayList<Integer>();  // - суммы завершенных блоков
+    private int filled; // - количество байтов в текущем блоке
+    private long length;    // - длина потока
+    private long fileCrc;   // - сумма всего потока после завершения
+
+    //Конструктор
+
+    public BlockChecksum(Logger logger, int blockSize) {
+        LOGGER = logger;
+        this.blockSize = blockSize;
+    }
+
+    //Метод, возвращающий размер блока
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    //Учет части массива
+
+    public void update(byte[] data, int offset, int count) {
+        file.update(data, offset, count);
+        length += count;
+        while (count > 0) {
+            int part = Math.min(count, blockSize - filled);
+            block.update(data, offset, part);
+            filled += part;
+            offset += part;
+            count -= part;
+            if (filled == blockSize)
+                nextBlock();
+        }
+    }
+
+    //Учет оставшейся части буфера (позиция буфера не меняется)
+
+    public void update(ByteBuffer data) {
+        ByteBuffer range = data.duplicate();
+        file.update(range.duplicate());
+        length += range.remaining();
+        while (range.hasRemaining()) {
+            ByteBuffer part = range.duplicate();
+            part.limit(part.position() + Math.min(range.remaining(), blockSize - filled));
+            filled += part.remaining();
+            range.position(part.limit());
+            block.update(part);
+            if (filled == blockSize)
+                nextBlock();
+        }
+    }
+
+    //Завершение текущего блока
+
+    private void nextBlock() {
+        blocks.add((int) block.getValue());
+        block.reset();
+        filled = 0;
+    }
+
+    //Завершение подсчета: неполный последний блок тоже получает сумму
+
+    public void finish() {
+        if (filled > 0)
+            nextBlock();
+        fileCrc = file.getValue();
+    }
+
+    //Сохранение сумм в файл
+
+    public RC save(String fileName) {
+        StringBuilder text = new StringBuilder();
+        text.append(tokens[tokenInd.BLOCK_SIZE.ordinal()]).append(' ').append(blockSize).append('\n');
+        text.append(tokens[tokenInd.LENGTH.ordinal()]).append(' ').append(length).append('\n');
+        text.append(tokens[tokenInd.FILE_CRC.ordinal()]).append(' ').append(Long.toHexString(fileCrc)).append('\n');
+        for (int i = 0; i < blocks.size(); i++)
+            text.append(blockToken).append(' ').append(i).append(' ').append(Integer.toHexString(blocks.get(i))).append('\n');
+        try {
+            Files.write(Paths.get(fileName), text.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {   // - обработка исключения
+            LOGGER.severe("Couldn't write checksum file");
+            return RC.CODE_FAILED_TO_WRITE;
+        }
+        LOGGER.info("Checksums of " + blocks.size() + " blocks written to " + fileName + ", file CRC32C " + Long.toHexString(fileCrc));
+        return RC.CODE_SUCCESS;
+    }
+
+    //Чтение сумм из файла, либо null при его отсутствии или ошибке
+
+    public static BlockChecksum load(Logger logger, String fileName) {
+        LOGGER = logger;
+        if (!Files.isRegularFile(Paths.get(fileName))) {
+            LOGGER.severe("Checksum file " + fileName + " is missing");
+            return null;
+        }
+        ChecksumSemantics sem = new ChecksumSemantics(LOGGER, tokens, blockToken);
+        sem.setConfig(fileName);
+        RC code = sem.readFile();   // - файл сумм перезаписывается при каждом запуске, кэш не нужен
+        if (code == RC.CODE_SUCCESS)
+            code = sem.run();
+        if (code != RC.CODE_SUCCESS)
+            return null;
+        Map<String, String> map = sem.getMap();
+        BlockChecksum sums;
+        try {   //Преобразовние строк в целые значения
+            sums = new BlockChecksum(LOGGER, Integer.parseInt(map.get(tokens[tokenInd.BLOCK_SIZE.ordinal()])));
+            sums.length = Long.parseLong(map.get(tokens[tokenInd.LENGTH.ordinal()]));
+            sums.fileCrc = Long.parseLong(map.get(tokens[tokenInd.FILE_CRC.ordinal()]), 16);
+            for (String[] block : sem.getBlocks()) {
+                if (Integer.parseInt(block[0]) != sums.blocks.size())   // - блоки идут по порядку
+                    throw new NumberFormatException();
+                sums.blocks.add((int) Long.parseLong(block[1], 16));
+            }
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid checksum file");
+            return null;
+        }
+        if (sums.blockSize < 1) {
+            LOGGER.severe("Invalid " + tokens[tokenInd.BLOCK_SIZE.ordinal()] + " value");
+            return null;
+        }
+        return sums;
+    }
+
+    //Сравнение с ожидаемыми суммами: номера блоков, которые отличаются или отсутствуют
+
+    public List<Integer> changedBlocks(BlockChecksum expected) {
+        List<Integer> changed = new ArrayList<Integer>();
+        int count = Math.max(blocks.size(), expected.blocks.size());
+        for (int i = 0; i < count; i++) {
+            if (i >= blocks.size() || i >= expected.blocks.size() || !blocks.get(i).equals(expected.blocks.get(i)))
+                changed.add(i);
+        }
+        return changed;
+    }
+
+    //Проверка совпадения длины и суммы всего потока с ожидаемыми
+
+    public boolean matches(BlockChecksum expected) {
+        return length == expected.length && fileCrc == expected.fileCrc && changedBlocks(expected).isEmpty();
+    }
+}
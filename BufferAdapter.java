@@ -0,0 +1,31 @@
+import ru.spbstu.pipeline.IExecutable;
+import ru.spbstu.pipeline.RC;
+
+import java.nio.ByteBuffer;
+
+//Адаптер, подключающий модуль с порциями byte[] к конвейеру буферов: порция копируется в массив,
+//а буфер сразу возвращается в пул
+
+class BufferAdapter implements IBufferExecutable {
+    private final IExecutable stage;    // - модуль, принимающий массивы
+    private final BufferPool pool;  // - пул, в который возвращаются буферы (может отсутствовать)
+
+    //Конструктор
+
+    public BufferAdapter(IExecutable stage, BufferPool pool) {
+        this.stage = stage;
+        this.pool = pool;
+    }
+
+    //Копирование порции в массив и передача ее модулю
+
+    public RC execute(ByteBuffer data) {
+        if (data == null)
+            return stage.execute(null);
+        byte[] chunk = new byte[data.remaining()];
+        data.get(chunk);
+        if (pool != null)
+            pool.release(data);
+        return stage.execute(chunk);
+    }
+}
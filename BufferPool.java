@@ -0,0 +1,74 @@
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+//Класс ограниченного пула буферов вне кучи для конвейера буферов
+
+class BufferPool {
+    private final ArrayBlockingQueue<ByteBuffer> buffers;   // - свободные буферы
+    private final Set<ByteBuffer> owned = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>()));  // - буферы, выделенные пулом
+    private final int capacity; // - максимальное количество хранимых буферов
+    private volatile int chunkSize; // - размер буфера
+
+    private final LongAdder hits = new LongAdder(); // - количество выдач буфера из пула
+    private final LongAdder misses = new LongAdder();   // - количество выделений нового буфера
+
+    //Конструктор, заполняющий пул заранее выделенными буферами
+
+    public BufferPool(int capacity, int chunkSize) {
+        this.capacity = capacity;
+        this.chunkSize = chunkSize;
+        buffers = new ArrayBlockingQueue<ByteBuffer>(capacity);
+        for (int i = 0; i < capacity; i++)
+            buffers.offer(allocate());
+    }
+
+    //Выделение нового буфера с запоминанием его принадлежности пулу
+
+    private ByteBuffer allocate() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(chunkSize);
+        if (owned.size() < 2 * capacity)    // - лишние буферы в пул все равно не вернутся
+            owned.add(buffer);
+        return buffer;
+    }
+
+    //Получение очищенного буфера из пула, либо выделение нового при его опустошении
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        while (buffer != null && buffer.capacity() != chunkSize)    // - буфер, возвращенный во время смены размера
+            buffer = buffers.poll();
+        if (buffer == null) {
+            misses.increment();
+            return allocate();
+        }
+        hits.increment();
+        buffer.clear();
+        return buffer;
+    }
+
+    //Смена размера буфера: буферы прежнего размера больше не принимаются и отдаются сборщику мусора
+
+    public void resize(int chunkSize) {
+        this.chunkSize = chunkSize;
+        buffers.clear();
+        owned.clear();
+    }
+
+    //Возврат буфера в пул после того, как он прошел через весь конвейер
+
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !owned.contains(buffer) || buffer.capacity() != chunkSize)   // - чужие буферы в пул не принимаются
+            return;
+        buffers.offer(buffer);  // - при заполненном пуле буфер отдается сборщику мусора
+    }
+
+    //Текстовое представление статистики пула для логов
+
+    public String stats() {
+        return "Buffer pool: size " + capacity + ", free " + buffers.size() + ", hits " + hits.sum() + ", misses " + misses.sum();
+    }
+}
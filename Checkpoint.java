@@ -0,0 +1,163 @@
+import ru.spbstu.pipeline.RC;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.logging.Logger;
+
+//Класс контрольной точки конвейера: поток периодически сбрасывает выходной файл на диск
+//и записывает в файл контрольной точки смещение, до которого выход гарантированно сохранен;
+//модули обработки сохраняют длину данных, поэтому смещение одинаково для входного и выходного файлов
+
+class Checkpoint {
+    private static Logger LOGGER;   // - ссылка на логгер
+
+    private final static String[] tokens = {"INPUT", "OUTPUT", "OFFSET"};   // - токены файла контрольной точки
+
+    private enum tokenInd {INPUT, OUTPUT, OFFSET}   // - индексы токенов
+
+    private final static String TEMP_SUFFIX = ".tmp";   // - суффикс временного файла при замене контрольной точки
+
+    private final String fileName;  // - имя файла контрольной точки
+    private final long interval;    // - период сохранения, мс
+    private final String input; // - входной файл конвейера
+    private final String output;    // - выходной файл конвейера
+
+    private FileChannel channel;    // - канал выходного файла
+    private long committed = -1;    // - последнее сохраненное смещение
+    private Thread thread;  // - поток сохранения
+    private volatile boolean stopped;   // - признак остановки потока
+
+    //Конструктор
+
+    public Checkpoint(Logger logger, String fileName, long interval, String input, String output) {
+        LOGGER = logger;
+        this.fileName = fileName;
+        this.interval = interval;
+        this.input = input;
+        this.output = output;
+    }
+
+    //Чтение сохраненного смещения; 0, если контрольной точки нет или она относится к другим файлам
+
+    public long load() {
+        if (!Files.isRegularFile(Paths.get(fileName))) {
+            LOGGER.info("No checkpoint found, starting from the beginning");
+            return 0;
+        }
+        BaseSemantics sem = new BaseSemantics(LOGGER, tokens);
+        sem.setConfig(fileName);
+        RC code = sem.readFile();   // - контрольная точка перезаписывается по ходу работы, кэш не нужен
+        if (code == RC.CODE_SUCCESS)
+            code = sem.run();
+        if (code != RC.CODE_SUCCESS) {
+            LOGGER.warning("Checkpoint is unreadable, starting from the beginning");
+            return 0;
+        }
+        Map<String, String> map = sem.getMap();
+        if (!map.get(tokens[tokenInd.INPUT.ordinal()]).equals(input) || !map.get(tokens[tokenInd.OUTPUT.ordinal()]).equals(output)) {
+            LOGGER.warning("Checkpoint belongs to other files, starting from the beginning");
+            return 0;
+        }
+        long offset;
+        try {   //Преобразовние строки в целое значение
+            offset = Long.parseLong(map.get(tokens[tokenInd.OFFSET.ordinal()]));
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            offset = -1;
+        }
+        if (offset < 0) {
+            LOGGER.warning("Invalid " + tokens[tokenInd.OFFSET.ordinal()] + " value, starting from the beginning");
+            return 0;
+        }
+        LOGGER.info("Checkpoint found at offset " + offset);
+        return offset;
+    }
+
+    //Запуск потока сохранения для канала выходного файла
+
+    public void start(FileChannel channel) {
+        this.channel = channel;
+        thread = new Thread(this::save, "pipeline-checkpoint");
+        thread.setDaemon(true); // - поток сохранения не удерживает процесс
+        thread.start();
+        LOGGER.info("Checkpoint every " + interval + " ms to " + fileName);
+    }
+
+    //Цикл потока сохранения; поток не прерывается, так как прерывание во время сброса закрыло бы канал выхода
+
+    private synchronized void save() {
+        while (!stopped) {
+            try {
+                wait(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!stopped)
+                commit();   // - при ошибке сохранения остается предыдущая контрольная точка
+        }
+    }
+
+    //Сохранение контрольной точки: выход сбрасывается на диск до записи смещения,
+    //а файл контрольной точки заменяется атомарно, поэтому на диске всегда целая запись
+
+    public synchronized RC commit() {
+        try {
+            long offset = channel.position();   // - все данные до этого смещения уже переданы системе
+            if (offset == committed)
+                return RC.CODE_SUCCESS;
+            channel.force(false);
+            Path path = Paths.get(fileName);
+            Path temp = Paths.get(fileName + TEMP_SUFFIX);
+            String text = tokens[tokenInd.INPUT.ordinal()] + " " + input + "\n"
+                    + tokens[tokenInd.OUTPUT.ordinal()] + " " + output + "\n"
+                    + tokens[tokenInd.OFFSET.ordinal()] + " " + offset + "\n";
+            try (FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                file.write(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+                file.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = offset;
+        } catch (IOException e) {   // - обработка исключения
+            LOGGER.warning("Couldn't save checkpoint");
+            return RC.CODE_FAILED_TO_WRITE;
+        }
+        LOGGER.fine("Checkpoint saved at offset " + committed);
+        return RC.CODE_SUCCESS;
+    }
+
+    //Остановка потока сохранения
+
+    public void stop() {
+        synchronized (this) {
+            stopped = true;
+            notifyAll();
+        }
+        if (thread == null)
+            return;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //Удаление контрольной точки после успешного завершения конвейера
+
+    public void complete() {
+        try {
+            Files.deleteIfExists(Paths.get(fileName));
+        } catch (IOException e) {   // - обработка исключения
+            LOGGER.warning("Couldn't remove checkpoint");
+            return;
+        }
+        LOGGER.info("Pipeline completed, checkpoint removed");
+    }
+}
@@ -0,0 +1,47 @@
+import ru.spbstu.pipeline.IExecutable;
+import ru.spbstu.pipeline.RC;
+
+import java.nio.ByteBuffer;
+
+//Модуль-ответвитель: учитывает каждую порцию в контрольной сумме до передачи следующему модулю,
+//который может изменить ее на месте
+
+class ChecksumTap implements IExecutable, IBufferExecutable, IFlushable {
+    private final BlockChecksum checksum;   // - подсчитываемые суммы
+    private final IExecutable stage;    // - следующий модуль
+    private final IBufferExecutable bufferStage;    // - следующий модуль в конвейере буферов
+
+    //Конструктор
+
+    public ChecksumTap(BlockChecksum checksum, IExecutable stage, IBufferExecutable bufferStage) {
+        this.checksum = checksum;
+        this.stage = stage;
+        this.bufferStage = bufferStage;
+    }
+
+    //Учет порции и передача ее модулю
+
+    public RC execute(byte[] data) {
+        if (data == null)
+            checksum.finish();
+        else
+            checksum.update(data, 0, data.length);
+        return stage.execute(data);
+    }
+
+    //Передача модулю сигнала о сбросе накопленных данных
+
+    public RC flushPending() {
+        return IFlushable.forward(stage);
+    }
+
+    //Учет буфера и передача его модулю
+
+    public RC execute(ByteBuffer data) {
+        if (data == null)
+            checksum.finish();
+        else
+            checksum.update(data);
+        return bufferStage.execute(data);
+    }
+}
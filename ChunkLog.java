@@ -0,0 +1,53 @@
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//Класс, объединяющий события обработки порций в периодические сводки вместо записи в лог на каждую порцию
+
+class ChunkLog {
+    private final static long INTERVAL_NANOS = 5_000_000_000L;  // - период вывода сводки
+
+    private final Logger logger;    // - логгер
+    private final String source;    // - имя класса модуля, от имени которого пишется сводка
+    private final String event; // - описание события
+    private long chunks;    // - количество порций с момента последней сводки
+    private long bytes; // - количество байтов с момента последней сводки
+    private long totalChunks;   // - общее количество порций
+    private long totalBytes;    // - общее количество байтов
+    private long last = System.nanoTime();  // - момент последней сводки
+
+    //Конструктор
+
+    public ChunkLog(Logger logger, Class<?> source, String event) {
+        this.logger = logger;
+        this.source = source.getName();
+        this.event = event;
+    }
+
+    //Учет очередной порции; сводка выводится не чаще одного раза за период
+
+    public void hit(long size) {
+        chunks++;
+        bytes += size;
+        long now = System.nanoTime();
+        if (now - last < INTERVAL_NANOS)
+            return;
+        last = now;
+        long count = chunks, amount = bytes;
+        logger.logp(Level.INFO, source, "execute", () -> event + ": " + count + " portions, " + amount + " bytes");
+        totalChunks += chunks;
+        totalBytes += bytes;
+        chunks = 0;
+        bytes = 0;
+    }
+
+    //Итоговая сводка по окончании данных
+
+    public void finish() {
+        totalChunks += chunks;
+        totalBytes += bytes;
+        chunks = 0;
+        bytes = 0;
+        if (logger.isLoggable(Level.INFO))
+            logger.logp(Level.INFO, source, "execute", event + ": " + totalChunks + " portions, " + totalBytes + " bytes in total");
+    }
+}
@@ -0,0 +1,58 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+//Класс ограниченного пула порций данных, позволяющий повторно использовать буферы чтения
+
+class ChunkPool {
+    private final ArrayBlockingQueue<byte[]> chunks;    // - свободные порции
+    private final int capacity; // - максимальное количество хранимых порций
+    private volatile int chunkSize; // - размер порции
+
+    private final LongAdder hits = new LongAdder(); // - количество выдач порции из пула
+    private final LongAdder misses = new LongAdder();   // - количество выделений новой порции
+
+    //Конструктор, заполняющий пул заранее выделенными порциями
+
+    public ChunkPool(int capacity, int chunkSize) {
+        this.capacity = capacity;
+        this.chunkSize = chunkSize;
+        chunks = new ArrayBlockingQueue<byte[]>(capacity);
+        for (int i = 0; i < capacity; i++)
+            chunks.offer(new byte[chunkSize]);
+    }
+
+    //Получение порции из пула, либо выделение новой при его опустошении
+
+    public byte[] acquire() {
+        byte[] chunk = chunks.poll();
+        while (chunk != null && chunk.length != chunkSize) // - порция, возвращенная во время смены размера
+            chunk = chunks.poll();
+        if (chunk == null) {
+            misses.increment();
+            return new byte[chunkSize];
+        }
+        hits.increment();
+        return chunk;
+    }
+
+    //Смена размера порции: порции прежнего размера больше не принимаются и отдаются сборщику мусора
+
+    public void resize(int chunkSize) {
+        this.chunkSize = chunkSize;
+        chunks.clear();
+    }
+
+    //Возврат порции в пул после того, как она прошла через весь конвейер
+
+    public void release(byte[] chunk) {
+        if (chunk == null || chunk.length != chunkSize)  // - чужие порции в пул не принимаются
+            return;
+        chunks.offer(chunk);    // - при заполненном пуле порция отдается сборщику мусора
+    }
+
+    //Текстовое представление статистики пула для логов
+
+    public String stats() {
+        return "Chunk pool: size " + capacity + ", free " + chunks.size() + ", hits " + hits.sum() + ", misses " + misses.sum();
+    }
+}
@@ -0,0 +1,15 @@
+import ru.spbstu.pipeline.RC;
+
+//Интерфейс последнего модуля конвейера (записи или отправки), возвращающего порции в пулы стартового модуля
+
+interface ChunkSink {
+    RC setMetrics(StageMetrics metrics);
+
+    int getRetained(int chunkSize);
+
+    RC setChunkPool(ChunkPool pool);
+
+    RC setBufferPool(BufferPool bufferPool);
+
+    RC close();
+}
@@ -0,0 +1,17 @@
+import ru.spbstu.pipeline.RC;
+
+//Интерфейс стартового модуля конвейера (чтения или приема), владеющего пулами порций
+
+interface ChunkSource {
+    RC setMetrics(StageMetrics metrics);
+
+    RC setDirect();
+
+    RC reserve(int chunks);
+
+    int getChunkSize();
+
+    ChunkPool getChunkPool();
+
+    BufferPool getBufferPool();
+}
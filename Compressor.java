@@ -0,0 +1,381 @@
+import ru.spbstu.pipeline.IExecutable;
+import ru.spbstu.pipeline.IExecutor;
+import ru.spbstu.pipeline.RC;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+//Задача сжатия блока в пуле потоков
+
+class CompressTask extends FutureTask<byte[]> {
+    private final int length;   // - размер исходного блока
+    private final long started = System.nanoTime(); // - момент создания задачи
+
+    //Конструктор
+
+    public CompressTask(Callable<byte[]> compression, int length) {
+        super(compression);
+        this.length = length;
+    }
+
+    //Метод, возвращающий размер исходного блока
+
+    public int length() {
+        return length;
+    }
+
+    //Метод, возвращающий момент создания задачи
+
+    public long getStarted() {
+        return started;
+    }
+}
+
+//Класс модуля сжатия: порции собираются в блоки, каждый блок сжимается в независимый член gzip;
+//последовательность членов является корректным файлом gzip, поэтому блоки можно сжимать параллельно
+
+public class Compressor implements IExecutor, IBufferExecutable, IFlushable {
+    private static Logger LOGGER;   // - ссылка на логгер
+
+    private final static String[] tokens = {"LEVEL"};   // - токен конфига модуля сжатия
+
+    private enum tokenInd {LEVEL}   // - индекс токена
+
+    private final static String[] optionalTokens = {"PARALLELISM", "BLOCK_SIZE"};  // - необязательные токены конфига модуля сжатия
+
+    private enum optionalTokenInd {PARALLELISM, BLOCK_SIZE} // - индексы необязательных токенов
+
+    private final static int DEFAULT_BLOCK_SIZE = 1 << 20;  // - размер блока по умолчанию
+    private final static int WINDOW_PER_THREAD = 2; // - количество одновременно сжимаемых блоков на поток
+
+    //Заголовок члена gzip: сигнатура, метод deflate, без флагов, времени и имени, ОС не указана
+
+    private final static byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private final static int TRAILER_SIZE = 8;  // - размер окончания члена: CRC32 и длина исходных данных
+
+    private IExecutable producer;   // - ссылка на производителя
+    private IExecutable consumer;   // - ссылка на потребителя
+
+    private String configFileName;  // - имя файла конфига
+    private Map<String, String> map;    // - словарь с содержимым конфига
+
+    private int level;  // - уровень сжатия
+    private int parallelism;    // - количество потоков сжатия
+    private int blockSize;  // - размер блока исходных данных
+    private byte[] block;   // - заполняемый блок
+    private int filled; // - количество байтов в заполняемом блоке
+    private ForkJoinPool pool;  // - пул потоков для параллельного сжатия
+    private ArrayDeque<CompressTask> inFlight;  // - сжимаемые блоки в исходном порядке
+    private ChunkPool chunkPool;    // - пул, в который возвращаются скопированные порции
+    private BufferPool bufferPool;  // - пул, в который возвращаются скопированные буферы
+    private StageMetrics metrics = new StageMetrics(Compressor.class.getSimpleName());  // - счетчики модуля
+    private ChunkLog chunkLog;  // - сводка сжатых блоков для лога
+
+    //Конструктор
+
+    public Compressor(Logger logger) {
+        LOGGER = logger;
+        chunkLog = new ChunkLog(logger, Compressor.class, "Data is compressed");
+    }
+
+    //Установка производителя
+
+    public RC setProducer(IExecutable p) {
+        if (p == null || !(p instanceof Reader || p instanceof Receiver || p instanceof Executor)) {
+            LOGGER.severe("Wrong producer");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        producer = p;
+        LOGGER.info("Producer set successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка потребителя
+
+    public RC setConsumer(IExecutable c) {
+        if (c == null || !(c instanceof Writer || c instanceof Sender || c instanceof StageChannel)) {
+            LOGGER.severe("Wrong consumer");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        consumer = c;
+        LOGGER.info("Consumer set successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод, проверящий и обрабатывающий значения токенов в конфиге
+
+    private RC dataValidation() {
+        try {   //Преобразовние строки в целое значение
+            level = Integer.parseInt(map.get(tokens[tokenInd.LEVEL.ordinal()]));
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + tokens[tokenInd.LEVEL.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) { // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + tokens[tokenInd.LEVEL.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        LOGGER.info(tokens[tokenInd.LEVEL.ordinal()] + " value is valid");
+
+        //Установка количества потоков сжатия
+
+        String value = map.get(optionalTokens[optionalTokenInd.PARALLELISM.ordinal()]);
+        parallelism = 1;
+        try {
+            if (value != null)
+                parallelism = Integer.parseInt(value);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.PARALLELISM.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (parallelism < 1) {  // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.PARALLELISM.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        LOGGER.info(optionalTokens[optionalTokenInd.PARALLELISM.ordinal()] + " value is valid");
+
+        //Установка размера блока
+
+        value = map.get(optionalTokens[optionalTokenInd.BLOCK_SIZE.ordinal()]);
+        blockSize = DEFAULT_BLOCK_SIZE;
+        try {
+            if (value != null)
+                blockSize = Integer.parseInt(value);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.BLOCK_SIZE.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (blockSize < 1) {    // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.BLOCK_SIZE.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        LOGGER.info(optionalTokens[optionalTokenInd.BLOCK_SIZE.ordinal()] + " value is valid");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод чтения и обработки конфига модуля сжатия
+
+    private RC readConfig() {
+        BaseSemantics sem = new BaseSemantics(LOGGER, tokens, optionalTokens);  // - создание экземпляра класса семантической обработки
+        sem.setConfig(configFileName);  // - установка конфига модуля
+        RC code = sem.readConfig(); // - чтение и парсинг конфига
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        code = sem.run();   // - проведение семантического анализа
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        map = sem.getMap(); // - получение обработанного содержимого конфига
+        code = dataValidation();    // - обработка содержимого конфига
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        LOGGER.info("Compressor config file read successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод установки имени конфига, а также работы с ним
+
+    public RC setConfig(String configFileName) {
+        if (configFileName == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        this.configFileName = configFileName;
+        LOGGER.info("Config file name is set");
+        return readConfig();
+    }
+
+    //Установка счетчиков модуля
+
+    public RC setMetrics(StageMetrics metrics) {
+        this.metrics = metrics;
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка пулов, в которые возвращаются порции после копирования в блок
+
+    public RC setPools(ChunkPool chunkPool, BufferPool bufferPool) {
+        this.chunkPool = chunkPool;
+        this.bufferPool = bufferPool;
+        LOGGER.info("Pools are set");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Сжатие блока в отдельный член gzip
+
+    private static byte[] compress(byte[] data, int length, int level) {
+        Deflater deflater = new Deflater(level, true);  // - поток deflate без обертки zlib
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + HEADER.length + TRAILER_SIZE);
+        out.write(HEADER, 0, HEADER.length);
+        byte[] buffer = new byte[Math.max(length / 4, 1 << 12)];
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        while (!deflater.finished()) {
+            int count = deflater.deflate(buffer);
+            out.write(buffer, 0, count);
+        }
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        writeInt(out, (int) crc.getValue());
+        writeInt(out, length);  // - длина исходных данных по модулю 2^32
+        return out.toByteArray();
+    }
+
+    //Запись целого в порядке от младшего байта к старшему, принятом в gzip
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        for (int i = 0; i < Integer.BYTES; i++)
+            out.write(value >>> (i * Byte.SIZE));
+    }
+
+    //Передача сжатого блока потребителю
+
+    private RC deliver(byte[] member, int length, long started) {
+        metrics.chunk(length, member.length, System.nanoTime() - started);
+        chunkLog.hit(member.length);
+        return consumer.execute(member);
+    }
+
+    //Передача потребителю первого из сжимаемых блоков после окончания его сжатия
+
+    private RC deliverNext() {
+        CompressTask task = inFlight.poll();
+        byte[] member;
+        try {
+            member = task.get();    // - ожидание окончания сжатия блока
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.severe("Compression was interrupted");
+            return RC.CODE_FAILED_TO_WRITE;
+        } catch (ExecutionException e) {
+            LOGGER.severe("Couldn't compress data");
+            return RC.CODE_FAILED_TO_WRITE;
+        }
+        return deliver(member, task.length(), task.getStarted());
+    }
+
+    //Сжатие заполненного блока: сразу, либо в пуле потоков с передачей блоков в исходном порядке
+
+    private RC submit() {
+        byte[] data = block;
+        int length = filled;
+        block = null;
+        filled = 0;
+        if (parallelism == 1) {
+            long start = System.nanoTime();
+            return deliver(compress(data, length, level), length, start);
+        }
+        if (pool == null) { // - пул создается при первом блоке
+            pool = new ForkJoinPool(parallelism);
+            inFlight = new ArrayDeque<CompressTask>();
+        }
+        CompressTask task = new CompressTask(() -> compress(data, length, level), length);
+        pool.execute(task);
+        inFlight.offer(task);
+        while (!inFlight.isEmpty() && (inFlight.size() >= WINDOW_PER_THREAD * parallelism || inFlight.peek().isDone())) {
+            RC code = deliverNext();    // - передача готовых блоков либо ожидание при заполненном окне
+            if (code != RC.CODE_SUCCESS)
+                return code;
+        }
+        return RC.CODE_SUCCESS;
+    }
+
+    //Копирование части порции в блок со сжатием заполненных блоков
+
+    private RC append(byte[] data, int offset, int length) {
+        while (length > 0) {
+            if (block == null)
+                block = new byte[blockSize];
+            int count = Math.min(length, blockSize - filled);
+            System.arraycopy(data, offset, block, filled, count);
+            filled += count;
+            offset += count;
+            length -= count;
+            if (filled == blockSize) {
+                RC code = submit();
+                if (code != RC.CODE_SUCCESS)
+                    return code;
+            }
+        }
+        return RC.CODE_SUCCESS;
+    }
+
+    //Сжатие последнего неполного блока и передача всех оставшихся блоков при достижении конца данных
+
+    private RC finish() {
+        RC code = filled > 0 ? submit() : RC.CODE_SUCCESS;
+        while (code == RC.CODE_SUCCESS && inFlight != null && !inFlight.isEmpty())
+            code = deliverNext();
+        close();
+        chunkLog.finish();
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        LOGGER.info("There is no data to compress");
+        return consumer.execute(null);
+    }
+
+    //Сжатие неполного блока отдельным членом gzip и передача потребителю всех сжимаемых блоков
+    //и сигнала о сбросе накопленных данных
+
+    public RC flushPending() {
+        RC code = filled > 0 ? submit() : RC.CODE_SUCCESS;
+        while (code == RC.CODE_SUCCESS && inFlight != null && !inFlight.isEmpty())
+            code = deliverNext();
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        return IFlushable.forward(consumer);
+    }
+
+    //Остановка пула потоков и сброс недостроенного блока; вызывается и после ошибки посреди данных
+
+    public RC close() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;    // - при повторном запуске пул создается заново
+            inFlight = null;
+        }
+        block = null;
+        filled = 0;
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод, добавляющий порцию в блок сжатия и передающий потребителю сжатые блоки
+
+    public RC execute(byte[] data) {
+        if (data == null)
+            return finish();
+        RC code = append(data, 0, data.length);
+        if (chunkPool != null)
+            chunkPool.release(data);    // - порция скопирована и больше не нужна
+        return code;
+    }
+
+    //Метод, добавляющий буфер в блок сжатия; буфер сразу возвращается в пул
+
+    public RC execute(ByteBuffer data) {
+        if (data == null)
+            return finish();
+        RC code = RC.CODE_SUCCESS;
+        while (code == RC.CODE_SUCCESS && data.hasRemaining()) {
+            if (block == null)
+                block = new byte[blockSize];
+            int count = Math.min(data.remaining(), blockSize - filled);
+            data.get(block, filled, count);
+            filled += count;
+            if (filled == blockSize)
+                code = submit();
+        }
+        if (bufferPool != null)
+            bufferPool.release(data);
+        return code;
+    }
+}
@@ -0,0 +1,85 @@
+import ru.spbstu.pipeline.RC;
+
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+//Класс наблюдателя за конфигами модулей: при изменении файла модули перечитывают его,
+//а новые значения применяются ими между порциями
+
+class ConfigWatcher {
+    private static Logger LOGGER;   // - ссылка на логгер
+
+    private final long interval;    // - период проверки файлов, мс
+    private final Map<String, List<Reloadable>> modules = new HashMap<String, List<Reloadable>>();  // - модули каждого конфига
+    private final Map<String, FileTime> times = new HashMap<String, FileTime>();    // - последнее известное время изменения
+    private Thread thread;  // - поток наблюдателя
+    private volatile boolean stopped;   // - признак остановки наблюдателя
+
+    //Конструктор
+
+    public ConfigWatcher(Logger logger, long interval) {
+        LOGGER = logger;
+        this.interval = interval;
+    }
+
+    //Регистрация модуля, получающего изменения конфига
+
+    public RC register(String configFileName, Reloadable module) {
+        if (configFileName == null || module == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        modules.computeIfAbsent(configFileName, name -> new ArrayList<Reloadable>()).add(module);
+        times.put(configFileName, BaseSemantics.modifiedTime(configFileName));
+        return RC.CODE_SUCCESS;
+    }
+
+    //Запуск потока наблюдателя
+
+    public void start() {
+        thread = new Thread(this::watch, "pipeline-config-watcher");
+        thread.setDaemon(true); // - наблюдатель не удерживает процесс
+        thread.start();
+        LOGGER.info("Watching " + modules.size() + " config files");
+    }
+
+    //Цикл наблюдателя: периодическая проверка времени изменения файлов
+
+    private void watch() {
+        while (!stopped) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {  // - прерывание означает остановку
+                return;
+            }
+            for (Map.Entry<String, List<Reloadable>> entry : modules.entrySet()) {
+                FileTime modified = BaseSemantics.modifiedTime(entry.getKey());
+                if (modified == null || Objects.equals(modified, times.get(entry.getKey())))
+                    continue;
+                times.put(entry.getKey(), modified);
+                LOGGER.info("Config file " + entry.getKey() + " changed");
+                for (Reloadable module : entry.getValue())
+                    module.reload();    // - при неверном конфиге модуль сохраняет прежние значения
+            }
+        }
+    }
+
+    //Остановка наблюдателя
+
+    public void stop() {
+        stopped = true;
+        if (thread == null)
+            return;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,388 @@
+import ru.spbstu.pipeline.IConfigurable;
+import ru.spbstu.pipeline.RC;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+//Класс менеджера-демона: процесс не завершается после задания, поэтому запуск JVM, настройка логгера
+//и JIT-компиляция сдвига выполняются один раз, а конфиги берутся из кэша разбора. Задания принимаются
+//строками через сокет и файлами из каталога очереди и выполняются пулом потоков; каждому заданию
+//возвращается код возврата и время его этапов
+
+public class DaemonManager implements IConfigurable {
+    private final static Logger LOGGER = Logger.getLogger(DaemonManager.class.getName());   // - создание логгера
+
+    private final static String[] tokens = {};  // - обязательных токенов нет
+    private final static String[] optionalTokens = {"LISTEN", "SPOOL", "WORKERS", "POLL_INTERVAL", "WARMUP"};    // - необязательные токены конфига демона
+
+    private enum optionalTokenInd {LISTEN, SPOOL, WORKERS, POLL_INTERVAL, WARMUP}   // - индексы необязательных токенов
+
+    private final static long DEFAULT_POLL_INTERVAL = 500;  // - период проверки каталога очереди по умолчанию, мс
+    private final static String JOB_SUFFIX = ".job";    // - суффикс файла задания в очереди
+    private final static String CLAIM_SUFFIX = ".running";  // - суффикс задания, взятого в работу
+    private final static String RESULT_SUFFIX = ".result";  // - суффикс файла результата задания
+    private final static String SHUTDOWN = "SHUTDOWN";  // - команда остановки демона
+    private final static String HEADER = "RC\tBYTES\tQUEUE_MS\tSETUP_MS\tRUN_MS";   // - заголовок результата
+    private final static double NANOS_PER_MILLI = 1e6;  // - количество наносекунд в миллисекунде
+
+    private String configFileName;  // - имя конфига демона
+    private Endpoint listen;    // - сокет приема заданий (null - не используется)
+    private Path spool; // - каталог очереди заданий (null - не используется)
+    private int workers;    // - количество потоков пула
+    private long pollInterval;  // - период проверки каталога очереди, мс
+    private String warmup;  // - файл задания, выполняемого при запуске для прогрева JIT (null - без прогрева)
+    private ExecutorService pool;   // - пул потоков заданий
+    private ServerSocketChannel server; // - сокет, принимающий подключения
+    private volatile boolean stopped;   // - признак остановки демона
+
+    //Метод, проверящий и обрабатывающий значения токенов в конфиге
+
+    private RC dataValidation(Map<String, String> map) {
+        String value = map.get(optionalTokens[optionalTokenInd.LISTEN.ordinal()]);
+        if (value != null) {
+            listen = new Endpoint(LOGGER, value);
+            if (listen.parse() != RC.CODE_SUCCESS || !listen.isSocket()) {  // - задания принимаются только сокетом
+                LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.LISTEN.ordinal()] + " value");
+                return RC.CODE_CONFIG_SEMANTIC_ERROR;
+            }
+        }
+
+        value = map.get(optionalTokens[optionalTokenInd.SPOOL.ordinal()]);
+        try {
+            if (value != null)
+                spool = Paths.get(value);
+        } catch (InvalidPathException e) {    // - обработка исключения неверного значения
+            spool = null;
+        }
+        if (value != null && (spool == null || !Files.isDirectory(spool))) {
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.SPOOL.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (listen == null && spool == null) {  // - заданиям неоткуда поступать
+            LOGGER.severe("Daemon requires LISTEN or SPOOL");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+
+        value = map.get(optionalTokens[optionalTokenInd.WORKERS.ordinal()]);
+        workers = Runtime.getRuntime().availableProcessors();
+        try {   //Преобразовние строки в целое значение
+            if (value != null)
+                workers = Integer.parseInt(value);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            workers = 0;
+        }
+        if (workers < 1) {  // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.WORKERS.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+
+        value = map.get(optionalTokens[optionalTokenInd.POLL_INTERVAL.ordinal()]);
+        pollInterval = DEFAULT_POLL_INTERVAL;
+        try {   //Преобразовние строки в целое значение
+            if (value != null)
+                pollInterval = Long.parseLong(value);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            pollInterval = 0;
+        }
+        if (pollInterval < 1) { // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.POLL_INTERVAL.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+
+        warmup = map.get(optionalTokens[optionalTokenInd.WARMUP.ordinal()]);
+        if (warmup != null && readJob(warmup) == null) {
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.WARMUP.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        LOGGER.info("Daemon values are valid");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод чтения и обработки конфига демона
+
+    private RC readConfig() {
+        BaseSemantics sem = new BaseSemantics(LOGGER, tokens, optionalTokens);
+        sem.setConfig(configFileName);
+        RC code = sem.readConfig(); // - чтение и парсинг конфига
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        code = sem.run();   // - проведение семантического анализа
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        code = dataValidation(sem.getMap());
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        LOGGER.info("Daemon config file read successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод установки имени конфига, а также работы с ним
+
+    public RC setConfig(String configFileName) {
+        if (configFileName == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        this.configFileName = configFileName;
+        LOGGER.info("Config file name is set");
+        return readConfig();
+    }
+
+    //Чтение строки задания из файла (null - файл недоступен или пуст)
+
+    private static String readJob(String fileName) {
+        try {
+            String line = new String(Files.readAllBytes(Paths.get(fileName)), StandardCharsets.UTF_8).trim();
+            return line.isEmpty() ? null : line;
+        } catch (IOException | InvalidPathException e) {
+            return null;
+        }
+    }
+
+    //Строка результата задания: код возврата, записанные байты, ожидание в очереди, настройка и работа конвейера
+
+    private static String result(RC code, long bytes, long queued, long started, long setUp, long finished) {
+        return String.format("%s\t%d\t%.1f\t%.1f\t%.1f", code, bytes, (started - queued) / NANOS_PER_MILLI,
+                (setUp - started) / NANOS_PER_MILLI, (finished - setUp) / NANOS_PER_MILLI);
+    }
+
+    //Выполнение одного задания на собственном конвейере. Строка задания: конфиг менеджера и, необязательно,
+    //вход и выход, заменяющие INPUT и OUTPUT конфига
+
+    private String runJob(String line, long queued) {
+        long started = System.nanoTime();
+        String[] words = line.trim().split("\\s+");
+        if (words.length != 1 && words.length != 3) {
+            LOGGER.severe("Job must have manager config, optionally input and output");
+            return result(RC.CODE_INVALID_ARGUMENT, 0, queued, started, started, started);
+        }
+        Manager manager = new Manager();
+        RC code = manager.setConfig(words[0]);
+        if (code == RC.CODE_SUCCESS && words.length == 3)
+            code = manager.setInputOutput(words[1], words[2]);
+        if (code == RC.CODE_SUCCESS)
+            code = manager.setPipeline();
+        long setUp = System.nanoTime();
+        if (code == RC.CODE_SUCCESS)
+            code = manager.run();
+        else
+            manager.release();  // - потоки конвейера, который не запустился
+        long bytes = manager.getMetrics() != null ? manager.getMetrics().getBytesWritten() : 0;
+        String result = result(code, bytes, queued, started, setUp, System.nanoTime());
+        LOGGER.info("Job " + line + ": " + result);
+        return result;
+    }
+
+    //Передача задания пулу потоков и ожидание его результата
+
+    private String submit(String line) {
+        long queued = System.nanoTime();
+        try {
+            return pool.submit(() -> runJob(line, queued)).get();
+        } catch (InterruptedException | ExecutionException e) { // - задание не завершилось
+            if (e instanceof InterruptedException)
+                Thread.currentThread().interrupt();
+            long now = System.nanoTime();
+            return result(RC.CODE_FAILED_PIPELINE_CONSTRUCTION, 0, queued, now, now, now);
+        }
+    }
+
+    //Обслуживание подключения: каждая строка - задание, в ответ - строка результата
+
+    private void serve(SocketChannel client) {
+        try (SocketChannel channel = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8), true)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty())
+                    continue;
+                if (line.trim().equals(SHUTDOWN)) {
+                    stop();
+                    out.println(SHUTDOWN);
+                    break;
+                }
+                out.println(submit(line));
+            }
+        } catch (IOException e) { // - клиент закрыл подключение
+            LOGGER.warning("Connection to client is lost");
+        }
+    }
+
+    //Цикл приема подключений; каждое подключение обслуживается своим потоком
+
+    private void accept() {
+        ExecutorService connections = Executors.newCachedThreadPool();
+        while (!stopped) {
+            try {
+                SocketChannel client = server.accept();
+                connections.execute(() -> serve(client));
+            } catch (AsynchronousCloseException e) {    // - сокет закрыт командой остановки
+                break;
+            } catch (IOException e) {
+                LOGGER.warning("Couldn't accept connection");
+            }
+        }
+        connections.shutdown();
+    }
+
+    //Выполнение задания из каталога очереди с сохранением результата в <задание>.result
+
+    private void runSpooled(Path claim, String name, long queued) {
+        String line = readJob(claim.toString());
+        String result = line != null ? runJob(line, queued) : result(RC.CODE_INVALID_ARGUMENT, 0, queued, queued, queued, queued);
+        Path target = spool.resolve(name + RESULT_SUFFIX);
+        Path temporary = spool.resolve(name + RESULT_SUFFIX + CLAIM_SUFFIX);
+        try {   //Результат появляется целиком: запись во временный файл и переименование
+            Files.write(temporary, Collections.singletonList(HEADER + System.lineSeparator() + result), StandardCharsets.UTF_8);
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(claim);
+        } catch (IOException e) {
+            LOGGER.severe("Couldn't write result of job " + name);
+        }
+    }
+
+    //Цикл проверки каталога очереди: задание забирается переименованием, поэтому его не возьмут дважды
+
+    private void watchSpool() {
+        while (!stopped) {
+            List<Path> jobs = new ArrayList<Path>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(spool, "*" + JOB_SUFFIX)) {
+                files.forEach(jobs::add);
+            } catch (IOException e) {
+                LOGGER.warning("Couldn't list spool directory");
+            }
+            Collections.sort(jobs); // - задания выполняются в порядке имен
+            for (Path job : jobs) {
+                String file = job.getFileName().toString();
+                String name = file.substring(0, file.length() - JOB_SUFFIX.length());
+                Path claim = spool.resolve(file + CLAIM_SUFFIX);
+                try {
+                    Files.move(job, claim, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {   // - задание уже забрано
+                    continue;
+                }
+                long queued = System.nanoTime();
+                pool.execute(() -> runSpooled(claim, name, queued));
+            }
+            try {
+                Thread.sleep(pollInterval);
+            } catch (InterruptedException e) {  // - прерывание означает остановку
+                return;
+            }
+        }
+    }
+
+    //Остановка демона: новые задания не принимаются, начатые выполняются до конца
+
+    private void stop() {
+        stopped = true;
+        try {
+            if (server != null)
+                server.close();
+        } catch (IOException e) {
+            LOGGER.warning("Listening socket is not closed");
+        }
+        LOGGER.info("Daemon is stopping");
+    }
+
+    //Метод, запускающий прием заданий и ожидающий команды остановки
+
+    public RC run() {
+        pool = Executors.newFixedThreadPool(workers);
+        if (warmup != null) // - задание прогрева выполняется до приема остальных
+            LOGGER.info("Warm-up job: " + runJob(readJob(warmup), System.nanoTime()));
+        List<Thread> threads = new ArrayList<Thread>();
+        if (listen != null) {
+            try {
+                server = listen.bind();
+            } catch (IOException e) {
+                LOGGER.severe("Couldn't listen on " + listen);
+                pool.shutdown();
+                return RC.CODE_INVALID_INPUT_STREAM;
+            }
+            threads.add(new Thread(this::accept, "pipeline-daemon-listener"));
+        }
+        if (spool != null)
+            threads.add(new Thread(this::watchSpool, "pipeline-daemon-spool"));
+        for (Thread thread : threads)
+            thread.start();
+        LOGGER.info("Daemon is ready: " + workers + " workers" + (listen != null ? ", listening on " + listen : "")
+                + (spool != null ? ", spool " + spool : ""));
+
+        RC code = RC.CODE_SUCCESS;
+        try {
+            threads.get(0).join();  // - без сокета демон работает до завершения процесса
+            for (Thread thread : threads) {
+                thread.interrupt();
+                thread.join();
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);   // - начатые задания выполняются до конца
+        } catch (InterruptedException e) { // - обработка прерывания ожидания
+            Thread.currentThread().interrupt();
+            LOGGER.severe("Daemon was interrupted");
+            code = RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        try {
+            if (listen != null)
+                listen.unbind();
+        } catch (IOException e) {
+            LOGGER.warning("Socket file is not removed");
+        }
+        LOGGER.info("Daemon stopped");
+        return code;
+    }
+
+    //Отправка задания работающему демону и вывод строки результата (клиентская сторона)
+
+    public static RC submit(String endpoint, String line) {
+        Endpoint target = new Endpoint(LOGGER, endpoint);
+        RC code = target.parse();
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        try (SocketChannel channel = target.openSocket();
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8), true)) {
+            out.println(line);
+            String reply = in.readLine();
+            if (reply == null) {
+                LOGGER.severe("Daemon closed connection");
+                return RC.CODE_FAILED_TO_READ;
+            }
+            System.out.println(line.trim().equals(SHUTDOWN) ? reply : HEADER + System.lineSeparator() + reply);
+            String[] words = reply.split("\t");
+            for (RC value : RC.values()) {
+                if (value.name().equals(words[0]))
+                    return value;
+            }
+            return RC.CODE_SUCCESS; // - ответ на команду остановки
+        } catch (IOException e) {
+            LOGGER.severe("Couldn't connect to daemon " + endpoint);
+            return RC.CODE_INVALID_OUTPUT_STREAM;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+import ru.spbstu.pipeline.RC;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Logger;
+
+//Класс конечной точки ввода-вывода конвейера: файл или именованный канал, стандартный поток (-),
+//соединение TCP (tcp://host:port) или локальный сокет (unix:path); с суффиксом ?listen сокет
+//ожидает одно входящее подключение вместо подключения к указанному адресу
+
+class Endpoint {
+    private static Logger LOGGER;   // - ссылка на логгер
+
+    public final static String STDIO = "-"; // - обозначение стандартного потока
+    private final static String TCP_PREFIX = "tcp://";  // - префикс соединения TCP
+    private final static String UNIX_PREFIX = "unix:";  // - префикс локального сокета
+    private final static String LISTEN_SUFFIX = "?listen";  // - суффикс ожидания подключения
+
+    private enum Kind {PATH, STDIO, TCP, UNIX}  // - виды конечных точек
+
+    private final String spec;  // - запись конечной точки из конфига
+    private Kind kind;  // - вид конечной точки
+    private String address; // - путь файла или сокета либо узел соединения TCP
+    private int port;   // - порт соединения TCP
+    private boolean listen; // - сокет ожидает подключения
+
+    //Конструктор
+
+    public Endpoint(Logger logger, String spec) {
+        LOGGER = logger;
+        this.spec = spec;
+    }
+
+    //Разбор записи конечной точки
+
+    public RC parse() {
+        if (spec == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        String value = spec;
+        listen = value.endsWith(LISTEN_SUFFIX);
+        if (listen)
+            value = value.substring(0, value.length() - LISTEN_SUFFIX.length());
+        if (value.startsWith(TCP_PREFIX)) {
+            kind = Kind.TCP;
+            value = value.substring(TCP_PREFIX.length());
+            int colon = value.lastIndexOf(':');
+            try {   //Преобразовние строки в целое значение
+                port = colon < 0 ? -1 : Integer.parseInt(value.substring(colon + 1));
+            } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+                port = -1;
+            }
+            address = colon < 0 ? "" : value.substring(0, colon);
+            if (port < 0 || port > 65535 || address.isEmpty() && !listen) {
+                LOGGER.severe("Invalid endpoint " + spec);
+                return RC.CODE_CONFIG_SEMANTIC_ERROR;
+            }
+        } else if (value.startsWith(UNIX_PREFIX)) {
+            kind = Kind.UNIX;
+            address = value.substring(UNIX_PREFIX.length());
+            if (address.isEmpty()) {    // - у сокета UNIX должен быть путь
+                LOGGER.severe("Invalid endpoint " + spec);
+                return RC.CODE_CONFIG_SEMANTIC_ERROR;
+            }
+        } else if (!listen && value.equals(STDIO))
+            kind = Kind.STDIO;
+        else if (!listen && !value.isEmpty()) {
+            kind = Kind.PATH;
+            address = value;
+        }
+        if (kind == null) { // - ожидание подключения возможно только на сокете
+            LOGGER.severe("Invalid endpoint " + spec);
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        return RC.CODE_SUCCESS;
+    }
+
+    //Проверка, является ли конечная точка сокетом
+
+    public boolean isSocket() {
+        return kind == Kind.TCP || kind == Kind.UNIX;
+    }
+
+    //Проверка, задана ли конечная точка путем в файловой системе (файл или именованный канал)
+
+    public boolean isPath() {
+        return kind == Kind.PATH;
+    }
+
+    //Проверка, является ли конечная точка обычным файлом (либо еще не созданным файлом):
+    //только такой файл поддерживает позиционирование, отображение в память и сохранение рядом служебных файлов
+
+    public boolean isRegularFile() {
+        if (kind != Kind.PATH)
+            return false;
+        try {
+            Path path = Paths.get(address);
+            return Files.isRegularFile(path) || !Files.exists(path);
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    //Открытие файла, именованного канала или стандартного потока ввода для чтения
+
+    public FileInputStream openInput() throws IOException {
+        if (kind == Kind.STDIO)
+            return new FileInputStream(FileDescriptor.in);
+        return new FileInputStream(address);    // - открытие именованного канала ждет подключения писателя
+    }
+
+    //Открытие файла, именованного канала или стандартного потока вывода для записи
+
+    public FileOutputStream openOutput() throws IOException {
+        if (kind == Kind.STDIO)
+            return new FileOutputStream(FileDescriptor.out);
+        return new FileOutputStream(address);   // - открытие именованного канала ждет подключения читателя
+    }
+
+    //Адрес сокета
+
+    private SocketAddress socketAddress() throws IOException {
+        return kind == Kind.UNIX ? unixAddress() : address.isEmpty() ? new InetSocketAddress(port) : new InetSocketAddress(address, port);
+    }
+
+    //Открытие сокета, принимающего подключения по адресу конечной точки
+
+    public ServerSocketChannel bind() throws IOException {
+        ServerSocketChannel server = kind == Kind.UNIX ? (ServerSocketChannel) openUnix(ServerSocketChannel.class)
+                : ServerSocketChannel.open();
+        try {
+            server.bind(socketAddress());
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        return server;
+    }
+
+    //Удаление файла локального сокета, который больше не принимает подключения
+
+    public void unbind() throws IOException {
+        if (kind == Kind.UNIX)
+            Files.deleteIfExists(Paths.get(address));
+    }
+
+    //Подключение сокета к адресу либо ожидание одного входящего подключения
+
+    public SocketChannel openSocket() throws IOException {
+        SocketAddress socketAddress = socketAddress();
+        if (!listen) {
+            SocketChannel socket = kind == Kind.UNIX ? (SocketChannel) openUnix(SocketChannel.class) : SocketChannel.open();
+            try {
+                socket.connect(socketAddress);
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+            LOGGER.info("Connected to " + spec);
+            return socket;
+        }
+        try (ServerSocketChannel server = bind()) {
+            LOGGER.info("Waiting for connection on " + spec);
+            SocketChannel socket = server.accept(); // - принимается единственное подключение
+            LOGGER.info("Accepted connection on " + spec);
+            return socket;
+        } finally {
+            unbind();   // - файл сокета больше не нужен
+        }
+    }
+
+    //Адрес локального сокета; локальные сокеты каналов появились в Java 16, а сборка ведется для Java 11,
+    //поэтому классы ищутся во время работы
+
+    private SocketAddress unixAddress() throws IOException {
+        try {
+            Class<?> type = Class.forName("java.net.UnixDomainSocketAddress");
+            return (SocketAddress) type.getMethod("of", String.class).invoke(null, address);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Unix domain sockets are not supported", e);
+        }
+    }
+
+    //Открытие канала локального сокета заданного типа
+
+    private Object openUnix(Class<?> type) throws IOException {
+        try {
+            ProtocolFamily family = StandardProtocolFamily.valueOf("UNIX");
+            return type.getMethod("open", ProtocolFamily.class).invoke(null, family);
+        } catch (IllegalArgumentException | ReflectiveOperationException e) {
+            throw new IOException("Unix domain sockets are not supported", e);
+        }
+    }
+
+    //Текстовое представление конечной точки
+
+    public String toString() {
+        return spec;
+    }
+}
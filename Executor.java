@@ -1,166 +1,422 @@
-import ru.spbstu.pipeline.IExecutable;
-import ru.spbstu.pipeline.IExecutor;
-import ru.spbstu.pipeline.RC;
-
-import java.util.Map;
-import java.util.logging.Logger;
-
-//Класс, выполнящий циклический сдвиг
-
-public class Executor implements IExecutor {
-    private static Logger LOGGER;   // - ссылка логгер
-
-    private final static String[] tokens = {"SHIFT_AMOUNT", "SHIFT_DIRECTION"}; // - токены конфига модуля обработки
-
-    private enum tokenInd {SHIFT_AMOUNT, SHIFT_DIRECTION}   // - индексы токенов
-
-    private final static int BYTE_SIZE = 8; // - размер байта в битах
-
-    private IExecutable producer;   // - ссылка на производителя
-    private IExecutable consumer;   // - ссылка на потребителя
-
-    private String configFileName;  // - имя файла конфига
-    private Map<String, String> map;    // - словарь с содержимым конфига
-
-    //Принимаемые значения направления сдвига
-
-    private final static String[] wordVal = {"left", "right"};
-    private final static String[] numberVal = {"-1", "1"};
-
-    private enum Direction {LEFT, RIGHT}    // - предстваление для храения направления сдвига
-
-    private int shiftAmount;    // - величина сдвига
-    private Direction shiftDirection;   // - направление сдвига
-
-    //Конструктор
-
-    public Executor(Logger logger) {
-        LOGGER = logger;
-    }
-
-    //Установка производителя
-
-    public RC setProducer(IExecutable p) {
-        if (p == null || !(p instanceof Reader)) {
-            LOGGER.severe("Wrong producer");
-            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
-        }
-        producer = p;
-        LOGGER.info("Producer set successfully");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Установка потребителя
-
-    public RC setConsumer(IExecutable c) {
-        if (c == null || !(c instanceof Writer)) {
-            LOGGER.severe("Wrong consumer");
-            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
-        }
-        consumer = c;
-        LOGGER.info("Consumer set successfully");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Метод, проверящий и обрабатывающий значения токенов в конфиге
-
-    public RC dataValidation() {
-        try {   //Преобразовние строки в целое значение
-            shiftAmount = Integer.parseInt(map.get(tokens[tokenInd.SHIFT_AMOUNT.ordinal()]));
-        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
-            LOGGER.severe("Invalid " + tokens[tokenInd.SHIFT_AMOUNT.ordinal()] + " value");
-            return RC.CODE_CONFIG_SEMANTIC_ERROR;
-        }
-        if (shiftAmount < 1) {  // - проверка допустимого диапазона значений
-            LOGGER.severe("Invalid " + tokens[tokenInd.SHIFT_AMOUNT.ordinal()] + " value");
-            return RC.CODE_CONFIG_SEMANTIC_ERROR;
-        }
-
-        //Установка направления сдвига
-
-        if (map.get(tokens[tokenInd.SHIFT_DIRECTION.ordinal()]).toLowerCase().equals(wordVal[shiftDirection.LEFT.ordinal()]) || map.get(tokens[tokenInd.SHIFT_DIRECTION.ordinal()]).equals(numberVal[shiftDirection.LEFT.ordinal()]))
-            shiftDirection = Direction.LEFT;
-        else if (map.get(tokens[tokenInd.SHIFT_DIRECTION.ordinal()]).toLowerCase().equals(wordVal[shiftDirection.RIGHT.ordinal()]) || map.get(tokens[tokenInd.SHIFT_DIRECTION.ordinal()]).equals(numberVal[shiftDirection.RIGHT.ordinal()]))
-            shiftDirection = Direction.RIGHT;
-        else {  //Обработка случая неверного значения направления сдвига
-            LOGGER.severe("Invalid " + tokens[tokenInd.SHIFT_DIRECTION.ordinal()] + " value");
-            return RC.CODE_CONFIG_SEMANTIC_ERROR;
-        }
-        LOGGER.info("Executor values are valid");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Метод чтения и обработки конфига модуля обработки
-
-    private RC readConfig() {
-        BaseSemantics sem = new BaseSemantics(LOGGER, tokens);  // - создание экземпляра класса семантической обработки
-        sem.setConfig(configFileName);  // - установка конфига менеджера
-        RC code = sem.readConfig(); // - чтение и парсинг конфига
-        if (code != RC.CODE_SUCCESS)
-            return code;
-        code = sem.run();   // - проведение семантического анализа
-        if (code != RC.CODE_SUCCESS)
-            return code;
-        map = sem.getMap(); // - получение обработанного содержимого конфига
-        code = dataValidation();    // - обработка содержимого конфига
-        if (code != RC.CODE_SUCCESS)
-            return code;
-        LOGGER.info("Executor config file read successfully");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Метод установки имени конфига, а также работы с ним
-
-    public RC setConfig(String configFileName) {
-        if (configFileName == null) {
-            LOGGER.severe("Null pointer");
-            return RC.CODE_INVALID_ARGUMENT;
-        }
-        this.configFileName = configFileName;
-        LOGGER.info("Config file name is set");
-        return readConfig();
-    }
-
-    //Циклический побитовый сдвиг влево
-
-    private byte shiftLeft(byte data) {
-        int x = data & 0xFF;
-        int y = shiftAmount % BYTE_SIZE;
-        return (byte) ((x << y) | (x >> (BYTE_SIZE - y)));
-    }
-
-    //Циклический побитовый сдвиг вправо
-
-    private byte shiftRight(byte data) {
-        int x = data & 0xFF;
-        int y = shiftAmount % BYTE_SIZE;
-        return (byte) ((x >> y) | (x << (BYTE_SIZE - y)));
-    }
-
-    //Метод, производящий циклический побитовый сдвиг
-
-    private byte[] doShift(byte[] data) {
-        if (data == null) { // - обработка случая достижения конца файла
-            LOGGER.info("There is no data to shift");
-            return null;
-        }
-        switch (shiftDirection) {
-            case LEFT:  //Побитовый сдвиг влево
-                for (int i = 0; i < data.length; i++)
-                    data[i] = shiftLeft(data[i]);
-                break;
-            case RIGHT: //Побитовый сдвиг вправо
-                for (int i = 0; i < data.length; i++)
-                    data[i] = shiftRight(data[i]);
-                break;
-        }
-        LOGGER.info("Data is shifted");
-        return data;
-    }
-
-    //Метод, производящий циклический побитовый сдвиг и запуск модуля потребителя
-
-    public RC execute(byte[] data) {
-        return consumer.execute(doShift(data));
-    }
-}
+import ru.spbstu.pipeline.IExecutable;
+import ru.spbstu.pipeline.IExecutor;
+import ru.spbstu.pipeline.RC;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+//Задача сдвига диапазона порции, делящаяся на подзадачи для выполнения в пуле потоков
+
+class ShiftTask extends RecursiveAction {
+    private final static long serialVersionUID = 1L;    // - версия сериализованной формы (задачи не сериализуются)
+
+    private final static int SPLIT_SIZE = 256 << 10;    // - наименьший размер диапазона, обрабатываемого одной задачей
+
+    private final ShiftKernel kernel;   // - ядро сдвига
+    private final byte[] data;  // - порция данных
+    private final ByteBuffer buffer;    // - порция данных в буфере (если задача создана для конвейера буферов)
+    private final int from; // - начало диапазона
+    private final int to;   // - конец диапазона
+    private final long started = System.nanoTime(); // - момент создания задачи
+
+    //Конструктор
+
+    public ShiftTask(ShiftKernel kernel, byte[] data, int from, int to) {
+        this.kernel = kernel;
+        this.data = data;
+        this.buffer = null;
+        this.from = from;
+        this.to = to;
+    }
+
+    //Конструктор задачи для порции в буфере
+
+    public ShiftTask(ShiftKernel kernel, ByteBuffer buffer, int from, int to) {
+        this.kernel = kernel;
+        this.data = null;
+        this.buffer = buffer;
+        this.from = from;
+        this.to = to;
+    }
+
+    //Метод, возвращающий обрабатываемую порцию
+
+    public byte[] getData() {
+        return data;
+    }
+
+    //Метод, возвращающий обрабатываемый буфер
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    //Метод, возвращающий размер диапазона
+
+    public int length() {
+        return to - from;
+    }
+
+    //Метод, возвращающий момент создания задачи
+
+    public long getStarted() {
+        return started;
+    }
+
+    //Сдвиг диапазона, либо его деление пополам при большом размере
+
+    protected void compute() {
+        if (to - from < 2 * SPLIT_SIZE) {
+            if (buffer != null)
+                kernel.apply(buffer, from, to);
+            else
+                kernel.apply(data, from, to);
+            return;
+        }
+        int middle = (from + (to - from) / 2) & ~(Long.BYTES - 1);  // - граница кратна длине слова ядра
+        if (buffer != null)
+            invokeAll(new ShiftTask(kernel, buffer, from, middle), new ShiftTask(kernel, buffer, middle, to));
+        else
+            invokeAll(new ShiftTask(kernel, data, from, middle), new ShiftTask(kernel, data, middle, to));
+    }
+}
+
+//Класс, выполнящий циклический сдвиг
+
+public class Executor implements IExecutor, IBufferExecutable, IFlushable, Reloadable {
+    private static Logger LOGGER;   // - ссылка логгер
+
+    private final static String[] tokens = {"SHIFT_AMOUNT", "SHIFT_DIRECTION"}; // - токены конфига модуля обработки
+
+    private enum tokenInd {SHIFT_AMOUNT, SHIFT_DIRECTION}   // - индексы токенов
+
+    private final static String[] optionalTokens = {"PARALLELISM"};    // - необязательный токен числа потоков обработки
+
+    private enum optionalTokenInd {PARALLELISM} // - индекс необязательного токена
+
+    private final static int WINDOW_PER_THREAD = 2; // - количество одновременно обрабатываемых порций на поток
+
+    private final static int BYTE_SIZE = 8; // - размер байта в битах
+
+    private IExecutable producer;   // - ссылка на производителя
+    private IExecutable consumer;   // - ссылка на потребителя
+    private IBufferExecutable bufferConsumer;   // - потребитель в конвейере буферов
+
+    private String configFileName;  // - имя файла конфига
+    private Map<String, String> map;    // - словарь с содержимым конфига
+
+    //Принимаемые значения направления сдвига
+
+    private final static String[] wordVal = {"left", "right"};
+    private final static String[] numberVal = {"-1", "1"};
+
+    enum Direction {LEFT, RIGHT}    // - предстваление для храения направления сдвига
+
+    private int shiftAmount;    // - величина сдвига
+    private Direction shiftDirection;   // - направление сдвига
+    private byte[] table;   // - таблица преобразования по собственному конфигу модуля
+    private ShiftKernel kernel; // - ядро побайтового преобразования
+    private final AtomicReference<ShiftKernel> pending = new AtomicReference<ShiftKernel>();   // - ядро из измененного конфига
+    private Executor head = this;   // - модуль, в который объединен данный
+    private final List<Executor> fused = new ArrayList<Executor>(); // - модули, объединенные в данный
+
+    private int parallelism;    // - количество потоков обработки
+    private ForkJoinPool pool;  // - пул потоков для параллельного сдвига
+    private ArrayDeque<ShiftTask> inFlight; // - обрабатываемые порции в исходном порядке
+    private StageMetrics metrics = new StageMetrics(Executor.class.getSimpleName());    // - счетчики модуля
+    private ChunkLog chunkLog;  // - сводка обработанных порций для лога
+
+    //Конструктор
+
+    public Executor(Logger logger) {
+        LOGGER = logger;
+        chunkLog = new ChunkLog(logger, Executor.class, "Data is shifted");
+    }
+
+    //Установка производителя
+
+    public RC setProducer(IExecutable p) {
+        if (p == null || !(p instanceof Reader || p instanceof Receiver || p instanceof Executor)) {
+            LOGGER.severe("Wrong producer");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        producer = p;
+        LOGGER.info("Producer set successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка потребителя
+
+    public RC setConsumer(IExecutable c) {
+        if (c == null || !(c instanceof Writer || c instanceof Sender || c instanceof Executor || c instanceof Compressor
+                || c instanceof StageChannel)) {
+            LOGGER.severe("Wrong consumer");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        consumer = c;
+        bufferConsumer = c instanceof IBufferExecutable ? (IBufferExecutable) c : new BufferAdapter(c, null);
+        LOGGER.info("Consumer set successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод, проверящий и обрабатывающий значения токенов в конфиге
+
+    public RC dataValidation() {
+        try {   //Преобразовние строки в целое значение
+            shiftAmount = Integer.parseInt(map.get(tokens[tokenInd.SHIFT_AMOUNT.ordinal()]));
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + tokens[tokenInd.SHIFT_AMOUNT.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (shiftAmount < 1) {  // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + tokens[tokenInd.SHIFT_AMOUNT.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+
+        //Установка направления сдвига
+
+        if (map.get(tokens[tokenInd.SHIFT_DIRECTION.ordinal()]).toLowerCase().equals(wordVal[shiftDirection.LEFT.ordinal()]) || map.get(tokens[tokenInd.SHIFT_DIRECTION.ordinal()]).equals(numberVal[shiftDirection.LEFT.ordinal()]))
+            shiftDirection = Direction.LEFT;
+        else if (map.get(tokens[tokenInd.SHIFT_DIRECTION.ordinal()]).toLowerCase().equals(wordVal[shiftDirection.RIGHT.ordinal()]) || map.get(tokens[tokenInd.SHIFT_DIRECTION.ordinal()]).equals(numberVal[shiftDirection.RIGHT.ordinal()]))
+            shiftDirection = Direction.RIGHT;
+        else {  //Обработка случая неверного значения направления сдвига
+            LOGGER.severe("Invalid " + tokens[tokenInd.SHIFT_DIRECTION.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        LOGGER.info("Executor values are valid");
+        table = ShiftKernel.rotationTable(leftShift(shiftAmount, shiftDirection));
+        kernel = new ShiftKernel(table, true);
+
+        //Установка количества потоков обработки
+
+        String value = map.get(optionalTokens[optionalTokenInd.PARALLELISM.ordinal()]);
+        parallelism = 1;
+        try {
+            if (value != null)
+                parallelism = Integer.parseInt(value);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.PARALLELISM.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (parallelism < 1) {  // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.PARALLELISM.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        LOGGER.info(optionalTokens[optionalTokenInd.PARALLELISM.ordinal()] + " value is valid");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод чтения и обработки конфига модуля обработки
+
+    private RC readConfig() {
+        BaseSemantics sem = new BaseSemantics(LOGGER, tokens, optionalTokens);  // - создание экземпляра класса семантической обработки
+        sem.setConfig(configFileName);  // - установка конфига менеджера
+        RC code = sem.readConfig(); // - чтение и парсинг конфига
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        code = sem.run();   // - проведение семантического анализа
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        map = sem.getMap(); // - получение обработанного содержимого конфига
+        code = dataValidation();    // - обработка содержимого конфига
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        LOGGER.info("Executor config file read successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод установки имени конфига, а также работы с ним
+
+    public RC setConfig(String configFileName) {
+        if (configFileName == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        this.configFileName = configFileName;
+        LOGGER.info("Config file name is set");
+        return readConfig();
+    }
+
+    //Приведение сдвига в заданном направлении к эквивалентному сдвигу влево
+
+    static int leftShift(int shiftAmount, Direction shiftDirection) {
+        int y = shiftAmount % BYTE_SIZE;
+        return shiftDirection == Direction.LEFT ? y : (BYTE_SIZE - y) % BYTE_SIZE;
+    }
+
+    //Объединение с побайтовым преобразованием следующего модуля обработки в один проход по таблице
+
+    public RC fuse(Executor next) {
+        if (next == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        kernel = new ShiftKernel(ShiftKernel.compose(kernel.table(), next.kernel.table()), true);
+        fused.add(next);
+        next.head = this;
+        parallelism = Math.max(parallelism, next.parallelism);
+        LOGGER.info("Executors are fused");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Повторное чтение конфига: новое ядро строится здесь, а подменяется в потоке конвейера перед следующей порцией
+
+    public RC reload() {
+        Executor fresh = new Executor(LOGGER);  // - проверка конфига без изменения текущих значений
+        RC code = fresh.setConfig(configFileName);
+        if (code != RC.CODE_SUCCESS) {
+            LOGGER.warning("Executor config is not reloaded, previous values are kept");
+            return code;
+        }
+        table = fresh.table;
+        return head.recompose();
+    }
+
+    //Построение ядра по таблицам модуля и объединенных в него модулей
+
+    private synchronized RC recompose() {
+        byte[] result = table;
+        for (Executor next : fused)
+            result = ShiftKernel.compose(result, next.table);
+        pending.set(new ShiftKernel(result, true));
+        LOGGER.info("Executor values are reloaded");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка счетчиков модуля
+
+    public RC setMetrics(StageMetrics metrics) {
+        this.metrics = metrics;
+        return RC.CODE_SUCCESS;
+    }
+
+    //Проверка, оставляет ли модуль данные без изменений
+
+    public boolean isIdentity() {
+        return kernel.isIdentity();
+    }
+
+    //Метод, производящий циклический побитовый сдвиг
+
+    private byte[] doShift(byte[] data) {
+        if (data == null) { // - обработка случая достижения конца файла
+            chunkLog.finish();
+            LOGGER.info("There is no data to shift");
+            return null;
+        }
+        long start = System.nanoTime();
+        kernel.apply(data, 0, data.length);
+        metrics.chunk(data.length, data.length, System.nanoTime() - start);
+        chunkLog.hit(data.length);
+        return data;
+    }
+
+    //Передача потребителю готовой порции, стоящей первой в очереди обрабатываемых
+
+    private RC deliver() {
+        ShiftTask task = inFlight.poll();
+        task.join();    // - ожидание окончания сдвига порции
+        metrics.chunk(task.length(), task.length(), System.nanoTime() - task.getStarted());
+        chunkLog.hit(task.length());
+        if (task.getBuffer() != null)
+            return bufferConsumer.execute(task.getBuffer());
+        return consumer.execute(task.getData());
+    }
+
+    //Метод, передающий потребителю все оставшиеся порции при достижении конца данных
+
+    private RC drain() {
+        while (pool != null && !inFlight.isEmpty()) {
+            RC code = deliver();
+            if (code != RC.CODE_SUCCESS)
+                return code;
+        }
+        close();
+        chunkLog.finish();
+        LOGGER.info("There is no data to shift");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Остановка пула потоков; вызывается и после ошибки посреди данных, когда конец данных не был передан
+
+    public RC close() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;    // - при повторном запуске пул создается заново
+            inFlight = null;
+        }
+        return RC.CODE_SUCCESS;
+    }
+
+    //Передача потребителю всех обрабатываемых порций и сигнала о сбросе накопленных данных
+
+    public RC flushPending() {
+        while (pool != null && !inFlight.isEmpty()) {
+            RC code = deliver();
+            if (code != RC.CODE_SUCCESS)
+                return code;
+        }
+        return IFlushable.forward(consumer);
+    }
+
+    //Метод, распределяющий сдвиг порций по пулу потоков и передающий их потребителю в исходном порядке
+
+    private RC executeParallel(ShiftTask task) {
+        RC code = RC.CODE_SUCCESS;
+        pool.execute(task); // - крупная порция делится между потоками
+        inFlight.offer(task);
+        while (!inFlight.isEmpty() && (inFlight.size() >= WINDOW_PER_THREAD * parallelism || inFlight.peek().isDone())) {
+            code = deliver();   // - передача готовых порций либо ожидание при заполненном окне
+            if (code != RC.CODE_SUCCESS)
+                return code;
+        }
+        return code;
+    }
+
+    //Применение измененного конфига и создание пула потоков перед очередной порцией
+
+    private void prepare() {
+        if (pending.get() != null)  // - применение измененного конфига между порциями
+            kernel = pending.getAndSet(null);
+        if (parallelism > 1 && pool == null) {  // - пул создается при первом запуске, после объединения модулей
+            pool = new ForkJoinPool(parallelism);
+            inFlight = new ArrayDeque<ShiftTask>();
+        }
+    }
+
+    //Метод, производящий циклический побитовый сдвиг и запуск модуля потребителя
+
+    public RC execute(byte[] data) {
+        prepare();
+        if (pool == null)
+            return consumer.execute(doShift(data));
+        if (data != null)
+            return executeParallel(new ShiftTask(kernel, data, 0, data.length));
+        RC code = drain();
+        return code != RC.CODE_SUCCESS ? code : consumer.execute(null);
+    }
+
+    //Метод, производящий циклический побитовый сдвиг буфера на месте и запуск модуля потребителя
+
+    public RC execute(ByteBuffer data) {
+        prepare();
+        if (data == null) { // - обработка случая достижения конца файла
+            RC code = drain();
+            return code != RC.CODE_SUCCESS ? code : bufferConsumer.execute(null);
+        }
+        if (pool != null)
+            return executeParallel(new ShiftTask(kernel, data, data.position(), data.limit()));
+        long start = System.nanoTime();
+        kernel.apply(data, data.position(), data.limit());
+        metrics.chunk(data.remaining(), data.remaining(), System.nanoTime() - start);
+        chunkLog.hit(data.remaining());
+        return bufferConsumer.execute(data);
+    }
+}
@@ -0,0 +1,61 @@
+import ru.spbstu.pipeline.RC;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+//Формат передачи порций между конвейерами разных JVM по сокету (числа - от старшего байта к младшему).
+//Соединение начинается с сигнатуры отправителя. Кадр: тип (1 байт), код возврата кадра ошибки (1 байт),
+//количество порций (4 байта), номер первой порции (8 байт), длина данных (4 байта); данные кадра - длины
+//порций, затем сами порции. В обратную сторону получатель передает целые числа: положительное - кредиты
+//(разрешение отправить еще столько порций), 0 - данные обработаны успешно, отрицательное - код ошибки
+
+class Frame {
+    public final static int MAGIC = 0x50495045; // - сигнатура соединения ("PIPE")
+    public final static byte DATA = 0;  // - кадр порций
+    public final static byte END = 1;   // - кадр конца данных
+    public final static byte ERROR = 2; // - кадр ошибки отправителя
+    public final static byte FLUSH = 3; // - кадр сброса накопленных данных (без порций)
+    public final static int HEADER_SIZE = 2 * Byte.BYTES + 2 * Integer.BYTES + Long.BYTES; // - размер заголовка кадра
+    public final static int MAX_CHUNKS = 1024;  // - наибольшее количество порций в кадре
+    public final static int MAX_LENGTH = Integer.MAX_VALUE - MAX_CHUNKS * Integer.BYTES;    // - наибольший объем порций кадра
+    public final static int DONE = 0;   // - ответ об успешной обработке всех данных
+
+    //Заполнение заголовка кадра
+
+    public static ByteBuffer header(ByteBuffer buffer, byte type, RC code, int count, long sequence, int length) {
+        buffer.clear();
+        buffer.put(type).put((byte) code.ordinal()).putInt(count).putLong(sequence).putInt(length);
+        return buffer;
+    }
+
+    //Представление кода ошибки в обратном направлении
+
+    public static int error(RC code) {
+        return -(code.ordinal() + 1);
+    }
+
+    //Код ошибки по его номеру; неизвестный номер считается ошибкой чтения
+
+    public static RC code(int ordinal) {
+        return ordinal >= 0 && ordinal < RC.values().length ? RC.values()[ordinal] : RC.CODE_FAILED_TO_READ;
+    }
+
+    //Чтение буфера целиком; закрытие соединения до заполнения буфера считается ошибкой
+
+    public static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0)
+                throw new EOFException();
+        }
+    }
+
+    //Запись буфера целиком
+
+    public static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
@@ -0,0 +1,10 @@
+import ru.spbstu.pipeline.RC;
+
+import java.nio.ByteBuffer;
+
+//Интерфейс модуля, принимающего порции в виде ByteBuffer (данные между position и limit) без копирования
+//в массив; null - признак конца данных
+
+public interface IBufferExecutable {
+    RC execute(ByteBuffer data);
+}
@@ -0,0 +1,14 @@
+import ru.spbstu.pipeline.RC;
+
+//Интерфейс модуля, способного передать накопленные данные дальше по конвейеру, не дожидаясь конца данных;
+//используется модулем чтения, когда он ожидает новых данных дописываемого файла
+
+public interface IFlushable {
+    RC flushPending();
+
+    //Передача сигнала модулю, если он его поддерживает
+
+    static RC forward(Object stage) {
+        return stage instanceof IFlushable ? ((IFlushable) stage).flushPending() : RC.CODE_SUCCESS;
+    }
+}
@@ -1,51 +1,154 @@
-import ru.spbstu.pipeline.RC;
-
-import java.io.FileInputStream;
-import java.util.logging.LogManager;
-
-/*Описание требований к конфигурационномым файлам:
-    Наличие всех соответствующих токенов и их значений конфигурационного файла;
-    Возможно применение символа "=" для указания значения токена;
-    Количество пробелов между словами не имеет значения;
-    Регистр значения направления сдвига не влияет на работу;
-    Порядок следования строк не имеет значения.
-
-Список всех токенов:
-    READER - конфиг для модуля чтения;
-    EXECUTOR - конфиг для модуля обработки данных;
-    WRITER - конфиг для модуля записи;
-    INPUT - файл с данными для обработки;
-    OUTPUT - файл с обработанными данными;
-    SIZE_TO_READ - размер порции байтов для чтения;
-    SHIFT_AMOUNT - величина циклического сдвига;
-    SHIFT_DIRECTION - направление сдвига;
-    SIZE_TO_WRITE - размер буфера данных для записи.
-
-Принимаемые значения направления сдвига:
-    left, -1 - циклический сдвиг влево;
-    right, 1 - циклический сдвиг вправо.*/
-
-public class Lab_2 {
-    private final static String logConfig = "log.config";   // - имя конфигурационного файла для логгера
-
-    public static void main(String[] args) {    // - точка входа
-        try {    //Применение конфига к логгеру:
-            LogManager.getLogManager().readConfiguration(new FileInputStream(logConfig));
-        } catch (Exception e) {   // - обработка возникающих исключений
-            System.err.println(logConfig + " is unavailable!");
-            return;
-        }
-        if (args.length != 1) { // - обработка случая неверного количества переданных аргументов
-            System.err.println("Wrong number of arguments!");
-            return;
-        }
-        Manager manager = new Manager();    // - создание экземпляра менеджера
-        RC code = manager.setConfig(args[0]);   // - установка конфига менеджера
-        if (code != RC.CODE_SUCCESS)    // - прекращение работы в случае возникновения ошибки
-            return;
-        code = manager.setPipeline();   // - создание конвеера
-        if (code != RC.CODE_SUCCESS)    // - прекращение работы в случае возникновения ошибки
-            return;
-        manager.run();  // - запуск конвеера
-    }
-}
+import ru.spbstu.pipeline.RC;
+
+import java.io.FileInputStream;
+import java.util.Arrays;
+import java.util.logging.LogManager;
+
+/*Описание требований к конфигурационномым файлам:
+    Наличие всех соответствующих токенов и их значений конфигурационного файла;
+    Возможно применение символа "=" для указания значения токена;
+    Количество пробелов между словами не имеет значения;
+    Регистр значения направления сдвига не влияет на работу;
+    Порядок следования строк не имеет значения.
+
+Список всех токенов:
+    READER - конфиг для модуля чтения;
+    EXECUTOR - конфиги для модулей обработки данных: один общий либо по одному на каждый модуль в порядке ORDER;
+    WRITER - конфиг для модуля записи;
+    INPUT - файл с данными для обработки (файл с расширением .gz распаковывается при чтении);
+    OUTPUT - файл с обработанными данными;
+        вместо файлов INPUT и OUTPUT могут быть заданы: именованный канал, - (стандартный ввод или вывод),
+        tcp://host:port (подключение TCP) или unix:path (локальный сокет, Java 16 и выше); с суффиксом ?listen
+        сокет ожидает одно входящее подключение (tcp://:port?listen - на всех адресах); PARTITIONS, CHECKPOINT
+        и CHECKSUM требуют обычных файлов, а отображение в память и копирование без обработки - обычного входного файла;
+    ORDER - порядок модулей конвейера: reader, один или несколько executor, необязательный compressor, writer;
+        вместо reader может стоять receiver, вместо writer - sender (конвейер делится между JVM, executor
+        тогда необязателен); READER и WRITER остаются обязательными, но не читаются на узле без этих модулей;
+    SIZE_TO_READ - размер порции байтов для чтения либо auto (подбор во время работы);
+    SHIFT_AMOUNT - величина циклического сдвига;
+    SHIFT_DIRECTION - направление сдвига;
+    SIZE_TO_WRITE - размер буфера данных для записи либо auto (подбор во время работы).
+
+Список необязательных токенов:
+    READ_MODE - режим чтения: stream (по умолчанию), mmap (отображение файла в память)
+        или follow (чтение дописываемого файла до истечения IDLE_TIMEOUT; перед ожиданием новых данных
+        неполная порция и данные, накопленные модулями, включая буфер SIZE_TO_WRITE, передаются на выход);
+    IDLE_TIMEOUT - время ожидания новых данных в режиме follow в миллисекундах (по умолчанию 10000);
+    POOL_SIZE - количество переиспользуемых порций чтения (по умолчанию 8);
+    READ_AHEAD - количество порций, читаемых заранее отдельным от обработки потоком (по умолчанию 0 - без упреждения);
+    MODE - режим работы конвейера: sync (по умолчанию) или concurrent (каждый модуль в своем потоке);
+    RING_SIZE - емкость канала между модулями в режиме concurrent (по умолчанию 4);
+    PARALLELISM - количество потоков модуля обработки (по умолчанию 1);
+    WRITE_MODE - режим записи: sync (по умолчанию) или async (заполненные буферы записывает отдельный поток);
+    BUFFERS - количество буферов размера SIZE_TO_WRITE в режиме async (по умолчанию 2, не меньше 2);
+    GATHER_BYTES - наибольший объем пакета, записываемого одним вызовом со сбором нескольких буферов
+        (по умолчанию 0 - каждый буфер записывается отдельно);
+    GATHER_COUNT - наибольшее количество буферов в пакете записи со сбором (по умолчанию 64, не больше 1024);
+    DATA_PATH - способ передачи порций: heap (по умолчанию, массивы байтов) или direct (буферы вне кучи:
+        чтение из канала файла, сдвиг на месте, запись в канал без промежуточных копий; не совместим с follow);
+    WATCH_INTERVAL - период проверки конфигов модулей обработки и записи в миллисекундах; измененные
+        SHIFT_AMOUNT, SHIFT_DIRECTION и SIZE_TO_WRITE применяются между порциями без остановки конвейера
+        (по умолчанию 0 - конфиги не отслеживаются);
+    MIN_SIZE_TO_READ, MAX_SIZE_TO_READ, MIN_SIZE_TO_WRITE, MAX_SIZE_TO_WRITE - границы подбора размера
+        при значении auto (по умолчанию 4096 и 4194304); подбор начинается с 65536 и удваивает либо уменьшает
+        вдвое размер, пока растет пропускная способность, измеренная по окнам не меньше 8 МБ; на малых входных
+        файлах, а также в режимах mmap и follow остается начальный размер;
+    CHECKPOINT - файл контрольной точки: смещение, до которого выходной файл сброшен на диск (fsync);
+        после успешного завершения файл удаляется; в пакетном режиме у каждого задания свой файл <OUTPUT>.checkpoint;
+    CHECKPOINT_INTERVAL - период сохранения контрольной точки в миллисекундах (по умолчанию 5000);
+    RESUME - yes: продолжить с контрольной точки (чтение с сохраненного смещения, округленного до размера порции,
+        выходной файл усекается до него и дописывается), no (по умолчанию): начать сначала; требует CHECKPOINT;
+    PARTITIONS - количество диапазонов входного файла (кратных порции чтения), каждый из которых обрабатывает
+        свой конвейер модулей в отдельном потоке: позиционное чтение своего диапазона и запись в тот же диапазон
+        заранее выделенного выходного файла (по умолчанию 1; не совместим с follow и CHECKPOINT);
+    COMPRESSOR - конфиг модулей сжатия compressor (обязателен, если compressor есть в ORDER); сжатие и распаковка
+        меняют длину данных, поэтому не совместимы с CHECKPOINT и PARTITIONS;
+    CHECKSUM - контрольные суммы CRC32C, считаемые по ходу передачи порций: off (по умолчанию), write (суммы
+        выходных данных сохраняются в <OUTPUT>.crc32c) или verify (дополнительно входные данные сверяются
+        с <INPUT>.crc32c, в лог выводятся номера измененных блоков); сверка сообщает результат только после
+        прохода всего входа, поэтому выход к этому моменту уже записан: <OUTPUT>.crc32c сохраняется лишь
+        при совпадении сумм, а при несовпадении удаляется; не совместим с PARTITIONS и RESUME,
+        verify не поддерживается для входного файла .gz;
+    CHECKSUM_BLOCK - размер блока, для которого сохраняется отдельная сумма (по умолчанию 1048576);
+    REMOTE - конфиг модулей sender и receiver (обязателен, если они есть в ORDER), один файл подходит обоим узлам.
+
+Токены конфига удаленной передачи (все необязательные):
+    CREDITS - количество порций, которые receiver принимает без подтверждения (по умолчанию 16);
+    BATCH_BYTES - объем, до которого sender собирает порции в один кадр (по умолчанию 0 - порция на кадр);
+    BATCH_COUNT - наибольшее количество порций в кадре (по умолчанию 64, не больше 1024).
+    Пример: узел хранения ORDER reader sender, OUTPUT tcp://compute:7000; вычислительный узел
+    ORDER receiver executor writer, INPUT tcp://:7000?listen. Вычислительный узел запускается первым;
+    ошибка любого узла передается другому, и оба завершаются с ней.
+
+Токены конфига модуля сжатия:
+    LEVEL - уровень сжатия gzip от 0 до 9;
+    PARALLELISM - количество потоков сжатия (по умолчанию 1);
+    BLOCK_SIZE - размер блока исходных данных, сжимаемого в независимый член gzip (по умолчанию 1048576).
+
+Пакетный режим (аргументы: -batch <конфиг>), токены пакетного конфига:
+    MANAGER - конфиг менеджера, общий для всех заданий (INPUT и OUTPUT в нем заменяются заданием);
+    JOB - задание: входной файл и выходной файл, может повторяться;
+        если вход задан шаблоном glob (например, data/*.bin), выход считается каталогом;
+    WORKERS - количество одновременно выполняемых заданий (по умолчанию число процессоров);
+    REPORT - файл итогового отчета по заданиям (необязательный).
+
+Режим демона (аргументы: -daemon <конфиг>): процесс остается запущенным, поэтому JVM, логгер, разбор конфигов
+и JIT-компиляция сдвига не повторяются для каждого задания. Задание - строка "<конфиг менеджера> [<вход> <выход>]"
+(относительные пути - от каталога демона); результат - строка RC, BYTES, QUEUE_MS, SETUP_MS, RUN_MS через табуляцию.
+Токены конфига демона (нужен хотя бы один из LISTEN и SPOOL):
+    LISTEN - сокет приема заданий tcp://host:port или unix:path; на каждую строку задания отвечает строкой
+        результата, строка SHUTDOWN останавливает демон после завершения начатых заданий;
+    SPOOL - каталог очереди: файл <имя>.job забирается в работу (<имя>.job.running), результат с заголовком
+        появляется в <имя>.result;
+    WORKERS - количество одновременно выполняемых заданий (по умолчанию число процессоров);
+    POLL_INTERVAL - период проверки каталога очереди в миллисекундах (по умолчанию 500);
+    WARMUP - файл задания, выполняемого при запуске до приема остальных, для прогрева JIT (необязательный).
+Отправка задания (аргументы: -submit <сокет> <задание> либо -submit <сокет> SHUTDOWN) выводит строку результата.
+
+Принимаемые значения направления сдвига:
+    left, -1 - циклический сдвиг влево;
+    right, 1 - циклический сдвиг вправо.*/
+
+public class Lab_2 {
+    private final static String logConfig = "log.config";   // - имя конфигурационного файла для логгера
+    private final static String batchFlag = "-batch";   // - ключ запуска пакетного режима
+    private final static String daemonFlag = "-daemon"; // - ключ запуска режима демона
+    private final static String submitFlag = "-submit"; // - ключ отправки задания демону
+
+    public static void main(String[] args) {    // - точка входа
+        try {    //Применение конфига к логгеру:
+            LogManager.getLogManager().readConfiguration(new FileInputStream(logConfig));
+        } catch (Exception e) {   // - обработка возникающих исключений
+            System.err.println(logConfig + " is unavailable!");
+            return;
+        }
+        if (args.length == 2 && args[0].equals(batchFlag)) {   // - пакетный режим
+            BatchManager batch = new BatchManager();
+            if (batch.setConfig(args[1]) == RC.CODE_SUCCESS)
+                batch.run();
+            return;
+        }
+        if (args.length == 2 && args[0].equals(daemonFlag)) {  // - режим демона
+            DaemonManager daemon = new DaemonManager();
+            if (daemon.setConfig(args[1]) == RC.CODE_SUCCESS)
+                daemon.run();
+            return;
+        }
+        if (args.length >= 3 && args[0].equals(submitFlag)) {  // - отправка задания демону
+            DaemonManager.submit(args[1], String.join(" ", Arrays.copyOfRange(args, 2, args.length)));
+            return;
+        }
+        if (args.length != 1) { // - обработка случая неверного количества переданных аргументов
+            System.err.println("Wrong number of arguments!");
+            return;
+        }
+        Manager manager = new Manager();    // - создание экземпляра менеджера
+        RC code = manager.setConfig(args[0]);   // - установка конфига менеджера
+        if (code != RC.CODE_SUCCESS)    // - прекращение работы в случае возникновения ошибки
+            return;
+        code = manager.setPipeline();   // - создание конвеера
+        if (code != RC.CODE_SUCCESS)    // - прекращение работы в случае возникновения ошибки
+            return;
+        manager.run();  // - запуск конвеера
+    }
+}
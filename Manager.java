@@ -1,309 +1,1149 @@
-import ru.spbstu.pipeline.IConfigurable;
-import ru.spbstu.pipeline.IExecutable;
-import ru.spbstu.pipeline.IPipelineStep;
-import ru.spbstu.pipeline.RC;
-
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.util.*;
-import java.util.logging.Logger;
-
-//Расширенный класс семантического разбора для менеджера
-
-class ManagerSemantics extends BaseSemantics {
-    private static Logger LOGGER;   // - ссылка на логгер
-
-    private String orderToken;  // - токен порядка установки модулей конвейера
-
-    private String[] order; // - массив порядка установки модулей
-
-    //Конструктор
-
-    public ManagerSemantics(Logger logger, String[] tokens, String orderToken) {
-        super(logger, tokens);
-        LOGGER = logger;
-        this.orderToken = orderToken;
-    }
-
-    //Функция, заполняющая порядок установки модулей
-
-    private RC fillOrder(ArrayList<String> arr) {
-        if (arr.size() < wordsNum) {    // - конвейер не будет работать без единого модуля
-            LOGGER.severe("Wrong amount of executors");
-            return RC.CODE_CONFIG_SEMANTIC_ERROR;
-        }
-        order = new String[arr.size() - 1];
-        for (int j = 1; j < arr.size(); j++) {
-            order[j - 1] = arr.get(j);
-        }
-        return RC.CODE_SUCCESS;
-    }
-
-    //Функция, производящая семантический анализ, обрабатывающая токен порядка модулей конвейера
-
-    public RC run() {
-        RC code = RC.CODE_SUCCESS;
-        if (data.size() != numberTokens() + 1) {    // - проверка колчества строк в файле
-            LOGGER.severe("Wrong number of tokens");
-            return RC.CODE_CONFIG_SEMANTIC_ERROR;
-        }
-        map = new HashMap<String, String>();    // - создание словаря для хранения данных
-        for (int i = 0; i < numberTokens(); i++) {
-            for (ArrayList<String> arr : data) {
-                if (order == null && arr.get(0).equals(orderToken)) {
-                    code = fillOrder(arr);  // - обработка случая токена порядка модулей
-                    if (code != RC.CODE_SUCCESS)
-                        return code;
-                }
-                if (arr.get(0).equals(token(i))) {
-                    code = fillMap(arr);    // - обработка остальных случаев
-                    if (code != RC.CODE_SUCCESS)
-                        return code;
-                    if (order != null)
-                        break;
-                }
-            }
-        }
-        if (order == null) {    // - проверка наличия токена порядка модулей в конфиге
-            LOGGER.severe("Order token is missing");
-            return RC.CODE_CONFIG_SEMANTIC_ERROR;
-        }
-        if (map.size() != numberTokens()) { // - соотношение количества требуемых и прочитанных токенов
-            LOGGER.severe("Invalid token");
-            return RC.CODE_CONFIG_SEMANTIC_ERROR;
-        }
-        LOGGER.info("Config file tokens are valid");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Метод, возвращающий массив текстовых представлений модулей
-
-    public String[] getOrder() {
-        return order;
-    }
-}
-
-//Класс менеджера
-
-public class Manager implements IConfigurable {
-    private final static Logger LOGGER = Logger.getLogger(Manager.class.getName()); // - создание логгера
-
-    private final static String[] tokens = {"READER", "EXECUTOR", "WRITER", "INPUT", "OUTPUT"}; // - токены конфига мессенджера
-    private final static String orderToken = "ORDER";   // - токен порядка модулей конвейера
-    private final static int moduleNum = 3; // - количество модулей конвейера
-
-    private enum tokenInd {READER, EXECUTOR, WRITER, INPUT, OUTPUT} // - индексы для токенов
-
-    private String configFileName;  // - имя файла конфига
-    private Map<String, String> map;    // - словарь с содержимым конфига
-    private Queue<IPipelineStep> queue; // - очередь модулей конвейера
-    private String[] order; // - текстовое представление порядка модулей конвейера
-
-    private IExecutable starter;    // - стартовый модуль
-
-    private FileInputStream fis;    // - поток чтения
-    private FileOutputStream fos;   // - поток записи
-
-    private Reader reader;  // - класс модуля чтения
-    private Executor executor;  // - класс модуля обработки
-    private Writer writer;  // - класс модуля записи
-
-    //Метод чтения и обработки конфига метода
-
-    private RC readConfig() {
-        ManagerSemantics sem = new ManagerSemantics(LOGGER, tokens, orderToken);  // - создание экземпляра класса семантической обработки
-        sem.setConfig(configFileName);  // - установка конфига менеджера
-        RC code = sem.readConfig(); // - чтение и парсинг конфига
-        if (code != RC.CODE_SUCCESS)
-            return code;
-        code = sem.run();   // - проведение семантического анализа
-        if (code != RC.CODE_SUCCESS)
-            return code;
-        map = sem.getMap(); // - получение обработанного содержимого конфига
-        order = sem.getOrder();   // - получение текстового предстваления порядка модулей конвейера
-        LOGGER.info("Manager config file read successfully");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Метод установки имени конфига, а также работы с ним
-
-    public RC setConfig(String configFileName) {
-        if (configFileName == null) {
-            LOGGER.severe("Null pointer");
-            return RC.CODE_INVALID_ARGUMENT;
-        }
-        this.configFileName = configFileName;
-        LOGGER.info("Config file name is set");
-        return readConfig();
-    }
-
-    //Метод обработки текстовых значений модулей и создания очереди подключения модулей
-
-    private RC setQueue(String[] order) {
-        if (order.length != moduleNum) {  // - проверка количества модулей
-            LOGGER.severe("Wrong amount of pipeline modules");
-            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
-        }
-
-        queue = new LinkedList<IPipelineStep>();    // - создание очереди
-
-        for (String module : order) {  //Проверка наличия модуля чтения
-            if (module.toLowerCase().equals(Reader.class.getSimpleName().toLowerCase())) {
-                if (reader != null) {
-                    LOGGER.severe("Reader module already exists");
-                    return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
-                }
-                reader = new Reader(LOGGER);    // - создание модуля чтения
-                queue.offer(reader);    // - добавление в очередь
-                continue;
-            }   //Проверка наличия модуля обработки
-            if (module.toLowerCase().equals(Executor.class.getSimpleName().toLowerCase())) {
-                if (executor != null) {
-                    LOGGER.severe("Executor module already exists");
-                    return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
-                }
-                executor = new Executor(LOGGER);  // - создание модуля обработки
-                queue.offer(executor);  // - добавление в очередь
-                continue;
-            }   //Проверка наличия модуля записи
-            if (module.toLowerCase().equals(Writer.class.getSimpleName().toLowerCase())) {
-                if (writer != null) {
-                    LOGGER.severe("Writer module already exists");
-                    return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
-                }
-                writer = new Writer(LOGGER);  // - создание модуля записи
-                queue.offer(writer);    // - добавление в очередь
-                continue;
-            }   //Обработка случая нераспознанного модуля конвейера:
-            LOGGER.severe("Unrecognized module");
-            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
-        }
-        LOGGER.info("Queue is set");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Метод, устанавливающий конфиг для модуля чтения, открывающий и передающий ему поток чтения
-
-    private RC setReader() {
-        RC code = RC.CODE_SUCCESS;
-
-        code = reader.setConfig(map.get(tokens[tokenInd.READER.ordinal()]));    // - установка соответствующего конфига модулю чтения
-        if (code != RC.CODE_SUCCESS)
-            return code;
-
-        try {
-            fis = new FileInputStream(map.get(tokens[tokenInd.INPUT.ordinal()]));   // - открытие потока чтения
-            code = reader.setInputStream(fis);  // - передача его в модуль чтени
-        } catch (FileNotFoundException e) { // - обработка исключения
-            LOGGER.severe("Input stream is invalid");
-            return RC.CODE_INVALID_INPUT_STREAM;
-        }
-        return code;
-    }
-
-    //Метод, устанавливающий конфиг модулю обработки
-
-    private RC setExecutor() {
-        return executor.setConfig(map.get(tokens[tokenInd.EXECUTOR.ordinal()]));    // - установка соответствующего конфига модулю обработки
-    }
-
-    //Метод, устанавливающий конфиг модулю записи, а также открывающий и передающйи поток для записи
-
-    private RC setWriter() {
-        RC code = RC.CODE_SUCCESS;
-
-        code = writer.setConfig(map.get(tokens[tokenInd.WRITER.ordinal()]));    // - установка соответствующего конфига модулю записи
-        if (code != RC.CODE_SUCCESS)
-            return code;
-
-        try {
-            fos = new FileOutputStream(map.get(tokens[tokenInd.OUTPUT.ordinal()])); // - открытие потока записи
-            code = writer.setOutputStream(fos); // - передача его в модуль записи
-        } catch (FileNotFoundException e) { // - обработка исключения
-            LOGGER.severe("Output stream is invalid");
-            return RC.CODE_INVALID_OUTPUT_STREAM;
-        }
-        return code;
-    }
-
-    //Установка модулей на конвейер
-
-    private RC setModules() {
-        RC code = RC.CODE_SUCCESS;
-        IPipelineStep producer = null, module, consumer;
-        while (true) {
-            try {
-                module = queue.remove();    // - извлечение модуля из очереди
-                consumer = queue.peek();    // - получение потребителя модуля без извлечения
-
-                if (producer == null)
-                    starter = module; // - установка стартового модуля
-
-                code = module.setProducer(producer);  // - установка производителя
-                if (code != RC.CODE_SUCCESS)
-                    return code;
-                code = module.setConsumer(consumer);  // - установка потребителя
-                if (code != RC.CODE_SUCCESS)
-                    return code;
-
-                producer = module;  // - установка актуального модуля производителем
-            } catch (NoSuchElementException e) {  // - обработка случая пустой очереди
-                break;
-            }
-        }
-        LOGGER.info("Pipeline set successfully");
-        return code;
-    }
-
-    //Метод настройки конвеера
-
-    public RC setPipeline() {
-        RC code = RC.CODE_SUCCESS;
-
-        code = setQueue(order); // - создание очереди
-        if (code != RC.CODE_SUCCESS)
-            return code;
-
-        code = setModules();    // - "сборка" конвейера
-        if (code != RC.CODE_SUCCESS)
-            return code;
-
-        code = setReader(); // - настройка модуля чтения
-        if (code != RC.CODE_SUCCESS)
-            return code;
-
-        code = setExecutor();   // - настройка модуля обработки
-        if (code != RC.CODE_SUCCESS)
-            return code;
-
-        code = setWriter(); // - настройка модуля записи
-        if (code != RC.CODE_SUCCESS)
-            return code;
-
-        return code;
-    }
-
-    //Метод, запускающий конвеер, а также закрывающий потоки чтения/записи
-
-    public RC run() {
-        RC code = RC.CODE_SUCCESS;
-
-        code = starter.execute(null);    // - запуск конвейера
-
-        try {
-            fis.close();    // - закрытие потока чтения
-        } catch (IOException e) {   // - обработка исключения
-            LOGGER.severe("Input stream is invalid");
-            code = RC.CODE_INVALID_INPUT_STREAM;
-        }
-        try {
-            fos.close();    // - закртыие потока записи
-        } catch (IOException e) {   // - обработка исключения
-            LOGGER.severe("Output stream is invalid");
-            code = RC.CODE_INVALID_OUTPUT_STREAM;
-        }
-        return code;
-    }
-}
+import ru.spbstu.pipeline.IConfigurable;
+import ru.spbstu.pipeline.IExecutable;
+import ru.spbstu.pipeline.IPipelineStep;
+import ru.spbstu.pipeline.RC;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+//Расширенный класс семантического разбора для менеджера
+
+class ManagerSemantics extends BaseSemantics {
+    private static Logger LOGGER;   // - ссылка на логгер
+
+    private String orderToken;  // - токен порядка установки модулей конвейера
+    private String listToken;   // - токен, принимающий несколько значений
+
+    private String[] order; // - массив порядка установки модулей
+    private String[] values;    // - значения токена, принимающего несколько значений
+
+    //Конструктор
+
+    public ManagerSemantics(Logger logger, String[] tokens, String[] optionalTokens, String orderToken, String listToken) {
+        super(logger, tokens, withOrder(optionalTokens, orderToken));
+        LOGGER = logger;
+        this.orderToken = orderToken;
+        this.listToken = listToken;
+    }
+
+    //Добавление токена порядка модулей к необязательным токенам базового разбора
+
+    private static String[] withOrder(String[] optionalTokens, String orderToken) {
+        String[] result = Arrays.copyOf(optionalTokens, optionalTokens.length + 1);
+        result[optionalTokens.length] = orderToken;
+        return result;
+    }
+
+    //Функция, заполняющая порядок установки модулей
+
+    private RC fillOrder(ArrayList<String> arr) {
+        if (arr.size() < wordsNum) {    // - конвейер не будет работать без единого модуля
+            LOGGER.severe("Wrong amount of executors");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        order = new String[arr.size() - 1];
+        for (int j = 1; j < arr.size(); j++) {
+            order[j - 1] = arr.get(j);
+        }
+        return RC.CODE_SUCCESS;
+    }
+
+    //Функция, обрабатывающая токен порядка модулей отдельно от остальных токенов
+
+    protected RC fillMap(ArrayList<String> arr) {
+        if (arr.get(0).equals(orderToken)) {
+            if (order != null) {    // - порядок модулей задается единожды
+                LOGGER.severe("Invalid token");
+                return RC.CODE_CONFIG_SEMANTIC_ERROR;
+            }
+            return fillOrder(arr);
+        }
+        if (arr.get(0).equals(listToken) && arr.size() > wordsNum) {    // - сохранение всех значений токена
+            values = arr.subList(1, arr.size()).toArray(new String[0]);
+            return super.fillMap(new ArrayList<String>(arr.subList(0, wordsNum)));
+        }
+        if (arr.get(0).equals(listToken) && arr.size() == wordsNum)
+            values = new String[]{arr.get(1)};
+        return super.fillMap(arr);
+    }
+
+    //Функция, производящая семантический анализ, обрабатывающая токен порядка модулей конвейера
+
+    public RC run() {
+        RC code = super.run();
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        if (order == null) {    // - проверка наличия токена порядка модулей в конфиге
+            LOGGER.severe("Order token is missing");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод, возвращающий массив текстовых представлений модулей
+
+    public String[] getOrder() {
+        return order;
+    }
+
+    //Метод, возвращающий все значения токена, принимающего несколько значений
+
+    public String[] getValues() {
+        return values;
+    }
+}
+
+//Класс менеджера
+
+public class Manager implements IConfigurable {
+    private final static Logger LOGGER = Logger.getLogger(Manager.class.getName()); // - создание логгера
+
+    private final static String[] tokens = {"READER", "EXECUTOR", "WRITER", "INPUT", "OUTPUT"}; // - токены конфига мессенджера
+    private final static String[] optionalTokens = {"MODE", "RING_SIZE", "WATCH_INTERVAL", "DATA_PATH",
+            "CHECKPOINT", "CHECKPOINT_INTERVAL", "RESUME", "PARTITIONS", "COMPRESSOR",
+            "CHECKSUM", "CHECKSUM_BLOCK", "REMOTE"};  // - необязательные токены конфига менеджера
+    private final static String orderToken = "ORDER";   // - токен порядка модулей конвейера
+
+    private enum tokenInd {READER, EXECUTOR, WRITER, INPUT, OUTPUT} // - индексы для токенов
+
+    private enum optionalTokenInd {MODE, RING_SIZE, WATCH_INTERVAL, DATA_PATH, CHECKPOINT, CHECKPOINT_INTERVAL, RESUME, PARTITIONS, COMPRESSOR, CHECKSUM, CHECKSUM_BLOCK, REMOTE} // - индексы для необязательных токенов
+
+    //Принимаемые значения режима работы конвейера
+
+    private final static String[] modeVal = {"sync", "concurrent"};
+
+    private enum Mode {SYNC, CONCURRENT}    // - представление для хранения режима работы
+
+    //Принимаемые значения способа передачи порций
+
+    private final static String[] dataPathVal = {"heap", "direct"};
+
+    private enum DataPath {HEAP, DIRECT}    // - представление для хранения способа передачи порций
+
+    //Принимаемые значения режима контрольных сумм
+
+    private final static String[] checksumVal = {"off", "write", "verify"};
+
+    private enum ChecksumMode {OFF, WRITE, VERIFY}  // - представление для хранения режима контрольных сумм
+
+    //Принимаемые значения признака продолжения с контрольной точки
+
+    private final static String[] resumeVal = {"no", "yes"};
+
+    private final static int DEFAULT_RING_SIZE = 4; // - емкость канала между модулями по умолчанию
+    private final static long DEFAULT_CHECKPOINT_INTERVAL = 5000;   // - период сохранения контрольной точки по умолчанию, мс
+    private final static String CHECKPOINT_SUFFIX = ".checkpoint";  // - суффикс контрольных точек заданий пакетного режима
+
+    private final static String MBEAN_NAME = "ru.spbstu.pipeline:type=PipelineMetrics,id=";  // - имя компонента JMX
+    private final static AtomicInteger pipelineCount = new AtomicInteger(); // - счетчик конвейеров для уникальности имен
+
+    private String configFileName;  // - имя файла конфига
+    private Map<String, String> map;    // - словарь с содержимым конфига
+    private Queue<IPipelineStep> queue; // - очередь модулей конвейера
+    private String[] order; // - текстовое представление порядка модулей конвейера
+    private String[] executorConfigs;   // - конфиги модулей обработки в порядке их следования
+
+    private IExecutable starter;    // - стартовый модуль
+    private List<IPipelineStep> steps;  // - модули конвейера в порядке установки
+    private List<StageChannel> channels;    // - каналы между модулями в многопоточном режиме
+
+    private Mode mode;  // - режим работы конвейера
+    private int ringSize;   // - емкость канала между модулями
+    private DataPath dataPath;  // - способ передачи порций: массивы в куче или буферы вне кучи
+    private long watchInterval; // - период проверки конфигов модулей, мс (0 - конфиги не отслеживаются)
+    private ConfigWatcher watcher;  // - наблюдатель за конфигами модулей
+    private long checkpointInterval;    // - период сохранения контрольной точки, мс
+    private boolean resume; // - продолжение с сохраненной контрольной точки
+    private Checkpoint checkpoint;  // - контрольная точка (null - не сохраняется)
+    private long resumeOffset;  // - смещение, с которого продолжается обработка
+    private ChecksumMode checksumMode;  // - режим контрольных сумм
+    private int checksumBlock;  // - размер блока контрольных сумм
+    private BlockChecksum outputChecksum;   // - суммы выхода, сохраняемые после сверки входа (режим verify)
+    private String outputChecksumFile;  // - файл сумм выхода в режиме verify
+    private int partitions; // - количество диапазонов входного файла, обрабатываемых параллельно
+    private List<Manager> parts;    // - конвейеры диапазонов (null - файл обрабатывается одним конвейером)
+    private boolean partition;  // - конвейер обрабатывает один диапазон в составе другого менеджера
+    private long rangeStart;    // - начало обрабатываемого диапазона
+    private long rangeEnd = -1; // - конец обрабатываемого диапазона (-1 - файл целиком)
+
+    private Endpoint inputPoint;    // - конечная точка чтения
+    private Endpoint outputPoint;   // - конечная точка записи
+    private ReadableByteChannel in; // - канал чтения (файла, именованного канала, стандартного потока или сокета)
+    private GatheringByteChannel out;   // - канал записи
+
+    private Reader reader;  // - класс модуля чтения
+    private List<Executor> executors;   // - модули обработки
+    private List<Compressor> compressors;   // - модули сжатия
+    private Writer writer;  // - класс модуля записи
+    private Receiver receiver;  // - модуль приема порций от конвейера другой JVM
+    private Sender sender;  // - модуль отправки порций конвейеру другой JVM
+    private ChunkSource source; // - стартовый модуль: чтения или приема
+    private ChunkSink sink; // - последний модуль: записи или отправки
+    private boolean copyOnly;   // - преобразование тождественно, данные копируются без обработки
+
+    private PipelineMetrics metrics;    // - счетчики конвейера
+    private ObjectName metricsName; // - имя зарегистрированного компонента JMX
+
+    //Метод, проверящий и обрабатывающий значения необязательных токенов в конфиге
+
+    private RC dataValidation() {
+        String value = map.get(optionalTokens[optionalTokenInd.MODE.ordinal()]);
+        if (value == null || value.toLowerCase().equals(modeVal[Mode.SYNC.ordinal()]))
+            mode = Mode.SYNC;
+        else if (value.toLowerCase().equals(modeVal[Mode.CONCURRENT.ordinal()]))
+            mode = Mode.CONCURRENT;
+        else {  //Обработка случая неверного значения режима работы
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.MODE.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+
+        value = map.get(optionalTokens[optionalTokenInd.RING_SIZE.ordinal()]);
+        ringSize = DEFAULT_RING_SIZE;
+        try {   //Преобразовние строки в целое значение
+            if (value != null)
+                ringSize = Integer.parseInt(value);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.RING_SIZE.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (ringSize < 1) { // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.RING_SIZE.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+
+        value = map.get(optionalTokens[optionalTokenInd.DATA_PATH.ordinal()]);
+        if (value == null || value.toLowerCase().equals(dataPathVal[DataPath.HEAP.ordinal()]))
+            dataPath = DataPath.HEAP;
+        else if (value.toLowerCase().equals(dataPathVal[DataPath.DIRECT.ordinal()]))
+            dataPath = DataPath.DIRECT;
+        else {  //Обработка случая неверного способа передачи порций
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.DATA_PATH.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+
+        value = map.get(optionalTokens[optionalTokenInd.WATCH_INTERVAL.ordinal()]);
+        watchInterval = 0;
+        try {   //Преобразовние строки в целое значение
+            if (value != null)
+                watchInterval = Long.parseLong(value);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.WATCH_INTERVAL.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (watchInterval < 0) {    // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.WATCH_INTERVAL.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+
+        value = map.get(optionalTokens[optionalTokenInd.CHECKPOINT_INTERVAL.ordinal()]);
+        checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        try {   //Преобразовние строки в целое значение
+            if (value != null)
+                checkpointInterval = Long.parseLong(value);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.CHECKPOINT_INTERVAL.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (checkpointInterval < 1) {   // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.CHECKPOINT_INTERVAL.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+
+        value = map.get(optionalTokens[optionalTokenInd.RESUME.ordinal()]);
+        if (value == null || value.toLowerCase().equals(resumeVal[0]))
+            resume = false;
+        else if (value.toLowerCase().equals(resumeVal[1]))
+            resume = true;
+        else {  //Обработка случая неверного значения признака продолжения
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.RESUME.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (resume && !map.containsKey(optionalTokens[optionalTokenInd.CHECKPOINT.ordinal()])) {    // - продолжать не с чего
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.RESUME.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+
+        value = map.get(optionalTokens[optionalTokenInd.PARTITIONS.ordinal()]);
+        partitions = 1;
+        try {   //Преобразовние строки в целое значение
+            if (value != null)
+                partitions = Integer.parseInt(value);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.PARTITIONS.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (partitions < 1 || partitions > 1 && map.containsKey(optionalTokens[optionalTokenInd.CHECKPOINT.ordinal()])) {  // - одно смещение не описывает несколько диапазонов
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.PARTITIONS.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+
+        value = map.get(optionalTokens[optionalTokenInd.CHECKSUM.ordinal()]);
+        if (value == null || value.toLowerCase().equals(checksumVal[ChecksumMode.OFF.ordinal()]))
+            checksumMode = ChecksumMode.OFF;
+        else if (value.toLowerCase().equals(checksumVal[ChecksumMode.WRITE.ordinal()]))
+            checksumMode = ChecksumMode.WRITE;
+        else if (value.toLowerCase().equals(checksumVal[ChecksumMode.VERIFY.ordinal()]))
+            checksumMode = ChecksumMode.VERIFY;
+        else {  //Обработка случая неверного режима контрольных сумм
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.CHECKSUM.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (checksumMode != ChecksumMode.OFF && (partitions > 1 || resume)) {   // - суммы считаются только по всему потоку
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.CHECKSUM.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+
+        value = map.get(optionalTokens[optionalTokenInd.CHECKSUM_BLOCK.ordinal()]);
+        checksumBlock = BlockChecksum.DEFAULT_BLOCK_SIZE;
+        try {   //Преобразовние строки в целое значение
+            if (value != null)
+                checksumBlock = Integer.parseInt(value);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.CHECKSUM_BLOCK.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (checksumBlock < 1) {    // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.CHECKSUM_BLOCK.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        LOGGER.info("Manager values are valid");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод чтения и обработки конфига метода
+
+    private RC readConfig() {
+        ManagerSemantics sem = new ManagerSemantics(LOGGER, tokens, optionalTokens, orderToken, tokens[tokenInd.EXECUTOR.ordinal()]);  // - создание экземпляра класса семантической обработки
+        sem.setConfig(configFileName);  // - установка конфига менеджера
+        RC code = sem.readConfig(); // - чтение и парсинг конфига
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        code = sem.run();   // - проведение семантического анализа
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        map = sem.getMap(); // - получение обработанного содержимого конфига
+        order = sem.getOrder();   // - получение текстового предстваления порядка модулей конвейера
+        executorConfigs = sem.getValues();  // - получение конфигов модулей обработки
+        code = dataValidation();    // - обработка необязательных значений конфига
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        LOGGER.info("Manager config file read successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод установки имени конфига, а также работы с ним
+
+    public RC setConfig(String configFileName) {
+        if (configFileName == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        this.configFileName = configFileName;
+        LOGGER.info("Config file name is set");
+        return readConfig();
+    }
+
+    //Замена входного и выходного файлов из конфига (используется пакетным режимом)
+
+    public RC setInputOutput(String input, String output) {
+        if (map == null || input == null || output == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        map = new HashMap<String, String>(map); // - словарь конфига может быть общим для нескольких конвейеров
+        map.put(tokens[tokenInd.INPUT.ordinal()], input);
+        map.put(tokens[tokenInd.OUTPUT.ordinal()], output);
+        if (map.containsKey(optionalTokens[optionalTokenInd.CHECKPOINT.ordinal()]))  // - своя контрольная точка у каждого задания
+            map.put(optionalTokens[optionalTokenInd.CHECKPOINT.ordinal()], output + CHECKPOINT_SUFFIX);
+        LOGGER.info("Input and output are set");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Назначение конвейеру диапазона входного файла и общих счетчиков (используется при разбиении на диапазоны)
+
+    private RC setRange(long from, long to, PipelineMetrics metrics) {
+        if (from < 0 || to < from || metrics == null) {
+            LOGGER.severe("Invalid range");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        partitions = 1;
+        partition = true;
+        rangeStart = from;
+        rangeEnd = to;
+        this.metrics = metrics;
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод, возвращающий счетчики конвейера
+
+    public PipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    //Метод обработки текстовых значений модулей и создания списка модулей
+
+    private RC setQueue(String[] order) {
+        steps = new ArrayList<IPipelineStep>();
+        executors = new ArrayList<Executor>();
+        compressors = new ArrayList<Compressor>();
+
+        for (String module : order) {  //Проверка наличия модуля чтения
+            if (module.toLowerCase().equals(Reader.class.getSimpleName().toLowerCase())) {
+                if (source != null) {
+                    LOGGER.severe("Reader module already exists");
+                    return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+                }
+                reader = new Reader(LOGGER);    // - создание модуля чтения
+                source = reader;
+                steps.add(reader);  // - добавление в список
+                continue;
+            }   //Модуль приема заменяет модуль чтения
+            if (module.toLowerCase().equals(Receiver.class.getSimpleName().toLowerCase())) {
+                if (source != null) {
+                    LOGGER.severe("Reader module already exists");
+                    return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+                }
+                receiver = new Receiver(LOGGER);    // - создание модуля приема
+                source = receiver;
+                steps.add(receiver);    // - добавление в список
+                continue;
+            }   //Модулей обработки может быть любое количество
+            if (module.toLowerCase().equals(Executor.class.getSimpleName().toLowerCase())) {
+                Executor executor = new Executor(LOGGER);  // - создание модуля обработки
+                executors.add(executor);
+                steps.add(executor);  // - добавление в список
+                continue;
+            }   //Модули сжатия используют общий конфиг
+            if (module.toLowerCase().equals(Compressor.class.getSimpleName().toLowerCase())) {
+                Compressor compressor = new Compressor(LOGGER);    // - создание модуля сжатия
+                compressors.add(compressor);
+                steps.add(compressor);  // - добавление в список
+                continue;
+            }   //Проверка наличия модуля записи
+            if (module.toLowerCase().equals(Writer.class.getSimpleName().toLowerCase())) {
+                if (sink != null) {
+                    LOGGER.severe("Writer module already exists");
+                    return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+                }
+                writer = new Writer(LOGGER);  // - создание модуля записи
+                sink = writer;
+                steps.add(writer);    // - добавление в список
+                continue;
+            }   //Модуль отправки заменяет модуль записи
+            if (module.toLowerCase().equals(Sender.class.getSimpleName().toLowerCase())) {
+                if (sink != null) {
+                    LOGGER.severe("Writer module already exists");
+                    return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+                }
+                sender = new Sender(LOGGER);    // - создание модуля отправки
+                sink = sender;
+                steps.add(sender);  // - добавление в список
+                continue;
+            }   //Обработка случая нераспознанного модуля конвейера:
+            LOGGER.severe("Unrecognized module");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        if (source == null || sink == null || executors.isEmpty() && receiver == null && sender == null) {  // - узел передачи может не обрабатывать данные
+            LOGGER.severe("Wrong amount of pipeline modules");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        if (executorConfigs.length != 1 && executorConfigs.length != executors.size()) {    // - один общий конфиг или по конфигу на модуль
+            LOGGER.severe("Wrong amount of executor configs");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        if (!compressors.isEmpty() && !map.containsKey(optionalTokens[optionalTokenInd.COMPRESSOR.ordinal()])) {
+            LOGGER.severe("Compressor config is missing");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        if ((receiver != null || sender != null) && !map.containsKey(optionalTokens[optionalTokenInd.REMOTE.ordinal()])) {
+            LOGGER.severe("Remote config is missing");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        LOGGER.info("Queue is set");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод, устанавливающий конфиг для модуля чтения, открывающий и передающий ему поток чтения
+
+    private RC setReader() {
+        RC code = RC.CODE_SUCCESS;
+
+        code = reader.setConfig(map.get(tokens[tokenInd.READER.ordinal()]));    // - установка соответствующего конфига модулю чтения
+        if (code != RC.CODE_SUCCESS)
+            return code;
+
+        try {
+            if (inputPoint.isSocket()) {
+                SocketChannel socket = inputPoint.openSocket(); // - подключение сокета
+                in = socket;
+                code = reader.setInputChannel(socket);  // - передача его в модуль чтения
+            } else {
+                FileInputStream fis = inputPoint.openInput();   // - открытие потока чтения
+                in = fis.getChannel();
+                code = reader.setInputStream(fis);  // - передача его в модуль чтени
+            }
+            if (code == RC.CODE_SUCCESS && inputPoint.isPath())
+                code = reader.setInputPath(inputPoint.toString());  // - путь для отслеживания дописываемого файла
+            if (code == RC.CODE_SUCCESS && partition)
+                code = reader.setRange(rangeStart, rangeEnd);   // - чтение только своего диапазона
+        } catch (IOException e) { // - обработка исключения
+            LOGGER.severe("Input stream is invalid");
+            return RC.CODE_INVALID_INPUT_STREAM;
+        }
+        return code;
+    }
+
+    //Метод, устанавливающий конфиг модулю приема и ожидающий подключения отправителя либо подключающийся к нему
+
+    private RC setReceiver() {
+        RC code = receiver.setConfig(map.get(optionalTokens[optionalTokenInd.REMOTE.ordinal()]));
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        if (!inputPoint.isSocket()) {   // - порции принимаются только по сокету
+            LOGGER.severe("Receiver requires a socket input");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        try {
+            SocketChannel socket = inputPoint.openSocket(); // - подключение сокета
+            in = socket;
+            return receiver.setChannel(socket); // - передача его в модуль приема
+        } catch (IOException e) { // - обработка исключения
+            LOGGER.severe("Input stream is invalid");
+            return RC.CODE_INVALID_INPUT_STREAM;
+        }
+    }
+
+    //Метод, устанавливающий конфиги модулям обработки
+
+    private RC setExecutors() {
+        for (int i = 0; i < executors.size(); i++) {
+            String config = executorConfigs[executorConfigs.length == 1 ? 0 : i];
+            RC code = executors.get(i).setConfig(config);   // - установка соответствующего конфига модулю обработки
+            if (code != RC.CODE_SUCCESS)
+                return code;
+            if (watcher != null)
+                watcher.register(config, executors.get(i)); // - отслеживание изменений конфига
+        }
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод, устанавливающий конфиг модулям сжатия
+
+    private RC setCompressors() {
+        for (Compressor compressor : compressors) {
+            RC code = compressor.setConfig(map.get(optionalTokens[optionalTokenInd.COMPRESSOR.ordinal()]));
+            if (code != RC.CODE_SUCCESS)
+                return code;
+        }
+        return RC.CODE_SUCCESS;
+    }
+
+    //Подключение контрольных сумм: модуль записи сохраняет суммы выхода, а в режиме verify модуль чтения
+    //сверяет прочитанные данные с суммами, сохраненными рядом с входным файлом. Сверка заканчивается
+    //только после прохода всего входа, поэтому суммы выхода в этом режиме сохраняет менеджер после нее
+
+    private RC setChecksums() {
+        if (checksumMode == ChecksumMode.OFF)
+            return RC.CODE_SUCCESS;
+        String input = map.get(tokens[tokenInd.INPUT.ordinal()]);
+        String output = map.get(tokens[tokenInd.OUTPUT.ordinal()]);
+        if (checksumMode == ChecksumMode.VERIFY) {
+            if (input.toLowerCase().endsWith(".gz")) {  // - суммы сжатого файла не описывают распакованные данные
+                LOGGER.severe("Compressed input can't be verified");
+                return RC.CODE_CONFIG_SEMANTIC_ERROR;
+            }
+            BlockChecksum expected = BlockChecksum.load(LOGGER, input + BlockChecksum.SUFFIX);
+            if (expected == null)
+                return RC.CODE_INVALID_INPUT_STREAM;
+            RC code = reader.setVerify(expected);
+            if (code != RC.CODE_SUCCESS)
+                return code;
+            outputChecksum = new BlockChecksum(LOGGER, checksumBlock);
+            outputChecksumFile = output + BlockChecksum.SUFFIX;
+            return writer.setChecksum(outputChecksum);
+        }
+        return writer.setChecksum(new BlockChecksum(LOGGER, checksumBlock), output + BlockChecksum.SUFFIX);
+    }
+
+    //Проверка, меняет ли конвейер длину данных: сжатие на выходе либо распаковка сжатого входа
+
+    private boolean changesLength() {
+        if (map.get(tokens[tokenInd.INPUT.ordinal()]).toLowerCase().endsWith(".gz"))
+            return true;
+        for (String module : order) {
+            if (module.toLowerCase().equals(Compressor.class.getSimpleName().toLowerCase()))
+                return true;
+        }
+        return false;
+    }
+
+    //Создание контрольной точки; при продолжении поток чтения переводится на сохраненное смещение,
+    //округленное вниз до размера порции, но не дальше уже записанной части выходного файла
+
+    private RC setCheckpoint() {
+        String fileName = map.get(optionalTokens[optionalTokenInd.CHECKPOINT.ordinal()]);
+        if (fileName == null)
+            return RC.CODE_SUCCESS;
+        if (changesLength()) {  // - смещение выхода не совпадает со смещением входа
+            LOGGER.severe("Checkpoint requires the pipeline to keep data length");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        String input = map.get(tokens[tokenInd.INPUT.ordinal()]);
+        String output = map.get(tokens[tokenInd.OUTPUT.ordinal()]);
+        checkpoint = new Checkpoint(LOGGER, fileName, checkpointInterval, input, output);
+        resumeOffset = 0;
+        if (!resume)
+            return RC.CODE_SUCCESS;
+        try {
+            long offset = checkpoint.load();
+            Path path = Paths.get(output);
+            offset = Math.min(offset, Files.isRegularFile(path) ? Files.size(path) : 0);
+            FileChannel file = (FileChannel) in;
+            offset = Math.min(offset, file.size());
+            resumeOffset = offset - offset % reader.getChunkSize();
+            file.position(resumeOffset);   // - модуль чтения продолжает с текущей позиции потока
+        } catch (IOException e) {   // - обработка исключения
+            LOGGER.severe("Input stream is invalid");
+            return RC.CODE_INVALID_INPUT_STREAM;
+        }
+        LOGGER.info("Resuming from offset " + resumeOffset);
+        return RC.CODE_SUCCESS;
+    }
+
+    //Оптимизация плана конвейера: соседние модули обработки объединяются в один проход по таблице,
+    //тождественное преобразование заменяется копированием входного файла, если конфиги не отслеживаются
+
+    private RC optimizePlan() {
+        for (int i = 0; i + 1 < steps.size(); i++) {
+            while (i + 1 < steps.size() && steps.get(i) instanceof Executor && steps.get(i + 1) instanceof Executor) {
+                RC code = ((Executor) steps.get(i)).fuse((Executor) steps.get(i + 1));
+                if (code != RC.CODE_SUCCESS)
+                    return code;
+                executors.remove(steps.remove(i + 1));  // - исключение объединенного модуля из конвейера
+            }
+        }
+        copyOnly = watcher == null && checksumMode == ChecksumMode.OFF && steps.size() == 3 && executors.size() == 1 && executors.get(0).isIdentity()
+                && reader != null && writer != null && inputPoint.isRegularFile();
+        if (copyOnly)
+            LOGGER.info("Transform is identity, input is copied");
+        LOGGER.info("Plan optimized: " + steps.size() + " modules");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод, устанавливающий конфиг модулю записи, а также открывающий и передающйи поток для записи
+
+    private RC setWriter() {
+        RC code = RC.CODE_SUCCESS;
+
+        code = writer.setConfig(map.get(tokens[tokenInd.WRITER.ordinal()]));    // - установка соответствующего конфига модулю записи
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        if (watcher != null)
+            watcher.register(map.get(tokens[tokenInd.WRITER.ordinal()]), writer);   // - отслеживание изменений конфига
+
+        try {
+            if (outputPoint.isSocket()) {
+                SocketChannel socket = outputPoint.openSocket();    // - подключение сокета
+                out = socket;
+                return writer.setOutputChannel(socket); // - передача его в модуль записи
+            }
+            FileOutputStream fos;
+            if (partition) {    // - собственный дескриптор выходного файла, установленный на начало диапазона
+                RandomAccessFile file = new RandomAccessFile(outputPoint.toString(), "rw");
+                file.seek(rangeStart);
+                fos = new FileOutputStream(file.getFD());   // - закрытие потока закрывает и файл
+            } else if (resumeOffset > 0) { // - выход дописывается после сохраненной части
+                fos = new FileOutputStream(outputPoint.toString(), true);
+                fos.getChannel().truncate(resumeOffset);    // - отбрасывание данных после контрольной точки
+            } else
+                fos = outputPoint.openOutput(); // - открытие потока записи
+            out = fos.getChannel();
+            code = writer.setOutputStream(fos); // - передача его в модуль записи
+        } catch (IOException e) { // - обработка исключения
+            LOGGER.severe("Output stream is invalid");
+            return RC.CODE_INVALID_OUTPUT_STREAM;
+        }
+        return code;
+    }
+
+    //Метод, устанавливающий конфиг модулю отправки и подключающий его к получателю
+
+    private RC setSender() {
+        RC code = sender.setConfig(map.get(optionalTokens[optionalTokenInd.REMOTE.ordinal()]));
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        if (!outputPoint.isSocket()) {  // - порции отправляются только по сокету
+            LOGGER.severe("Sender requires a socket output");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        try {
+            SocketChannel socket = outputPoint.openSocket();    // - подключение сокета
+            out = socket;
+            return sender.setChannel(socket);   // - передача его в модуль отправки
+        } catch (IOException e) { // - обработка исключения
+            LOGGER.severe("Output stream is invalid");
+            return RC.CODE_INVALID_OUTPUT_STREAM;
+        }
+    }
+
+    //Установка модулей на конвейер
+
+    private RC setModules() {
+        RC code = RC.CODE_SUCCESS;
+        IPipelineStep producer = null, module, consumer;
+        queue = new LinkedList<IPipelineStep>(steps);   // - создание очереди
+        while (true) {
+            try {
+                module = queue.remove();    // - извлечение модуля из очереди
+                consumer = queue.peek();    // - получение потребителя модуля без извлечения
+
+                if (producer == null)
+                    starter = module; // - установка стартового модуля
+
+                code = module.setProducer(producer);  // - установка производителя
+                if (code != RC.CODE_SUCCESS)
+                    return code;
+                code = module.setConsumer(consumer);  // - установка потребителя
+                if (code != RC.CODE_SUCCESS)
+                    return code;
+
+                producer = module;  // - установка актуального модуля производителем
+            } catch (NoSuchElementException e) {  // - обработка случая пустой очереди
+                break;
+            }
+        }
+        LOGGER.info("Pipeline set successfully");
+        return code;
+    }
+
+    //Установка каналов между модулями для многопоточного режима: каждый модуль, кроме стартового,
+    //получает свой поток и принимает порции через кольцевой буфер
+
+    private RC setChannels() {
+        channels = new ArrayList<StageChannel>();
+        for (int i = 1; i < steps.size(); i++) {
+            StageChannel channel = new StageChannel(LOGGER, steps.get(i), ringSize);
+            RC code = steps.get(i - 1).setConsumer(channel);    // - подключение канала вместо модуля
+            if (code != RC.CODE_SUCCESS)
+                return code;
+            channels.add(channel);
+        }
+        LOGGER.info("Channels set successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Создание счетчиков модулей и регистрация их в JMX
+
+    private RC setMetrics() {
+        if (!partition)
+            metrics = new PipelineMetrics();
+        RC code = source.setMetrics(metrics.stage(source.getClass().getSimpleName()));
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        StageMetrics executorMetrics = metrics.stage(Executor.class.getSimpleName());   // - общие счетчики для модулей обработки
+        for (Executor executor : executors) {
+            code = executor.setMetrics(executorMetrics);
+            if (code != RC.CODE_SUCCESS)
+                return code;
+        }
+        for (Compressor compressor : compressors) {
+            code = compressor.setMetrics(metrics.stage(Compressor.class.getSimpleName()));
+            if (code != RC.CODE_SUCCESS)
+                return code;
+        }
+        code = sink.setMetrics(metrics.stage(sink.getClass().getSimpleName()));
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        if (!partition) // - счетчики диапазонов публикует менеджер, разбивший файл
+            registerMetrics();
+        LOGGER.info("Metrics set successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Регистрация счетчиков в JMX
+
+    private void registerMetrics() {
+        try {
+            metricsName = new ObjectName(MBEAN_NAME + pipelineCount.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, metricsName);
+        } catch (JMException e) {   // - конвейер работает и без публикации счетчиков
+            LOGGER.warning("Pipeline metrics are not registered");
+            metricsName = null;
+        }
+    }
+
+    //Вывод сводной таблицы счетчиков и снятие компонента JMX с регистрации
+
+    private void reportMetrics() {
+        if (partition)  // - сводку по всем диапазонам выводит менеджер, разбивший файл
+            return;
+        metrics.finish();
+        LOGGER.info("Pipeline metrics:\n" + metrics.getSummary());
+        if (metricsName == null)
+            return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+        } catch (JMException e) {
+            LOGGER.warning("Pipeline metrics are not unregistered");
+        }
+    }
+
+    //Разбиение входного файла на диапазоны, кратные порции чтения, и настройка конвейера для каждого;
+    //выходной файл заранее получает размер входного, и каждый конвейер пишет в свой диапазон
+
+    private RC setPartitions() {
+        if (changesLength()) {  // - диапазоны выхода не совпадают с диапазонами входа
+            LOGGER.severe("Partitions require the pipeline to keep data length");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        String input = map.get(tokens[tokenInd.INPUT.ordinal()]);
+        String output = map.get(tokens[tokenInd.OUTPUT.ordinal()]);
+        Reader probe = new Reader(LOGGER);  // - размер порции берется из конфига модуля чтения
+        RC code = probe.setConfig(map.get(tokens[tokenInd.READER.ordinal()]));
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        long size;
+        try {
+            size = Files.size(Paths.get(input));
+        } catch (IOException | InvalidPathException e) {   // - разбивается только обычный файл
+            LOGGER.severe("Input stream is invalid");
+            return RC.CODE_INVALID_INPUT_STREAM;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(output, "rw")) {
+            file.setLength(size);   // - выходной файл сразу получает итоговый размер
+        } catch (IOException e) {   // - обработка исключения
+            LOGGER.severe("Output stream is invalid");
+            return RC.CODE_INVALID_OUTPUT_STREAM;
+        }
+        long chunk = probe.getChunkSize();
+        long length = (size / partitions + chunk - 1) / chunk * chunk;  // - размер диапазона, кратный порции
+        metrics = new PipelineMetrics();    // - счетчики, общие для всех диапазонов
+        parts = new ArrayList<Manager>();
+        for (long from = 0; from < size; from += length) {
+            Manager part = new Manager();
+            code = part.setConfig(configFileName);
+            if (code == RC.CODE_SUCCESS)
+                code = part.setInputOutput(input, output);
+            if (code == RC.CODE_SUCCESS)
+                code = part.setRange(from, Math.min(size, from + length), metrics);
+            if (code == RC.CODE_SUCCESS)
+                code = part.setPipeline();
+            if (code != RC.CODE_SUCCESS) {
+                part.release(); // - диапазон еще не в списке, его потоки не освободятся вместе с остальными
+                return code;
+            }
+            parts.add(part);
+        }
+        registerMetrics();
+        LOGGER.info("Input is split into " + parts.size() + " ranges of " + length + " bytes");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Разбор конечных точек чтения и записи до их открытия: диапазоны, контрольная точка и контрольные суммы
+    //требуют обычных файлов, у потоков и сокетов нет смещений и места для служебных файлов
+
+    private RC setEndpoints() {
+        inputPoint = new Endpoint(LOGGER, map.get(tokens[tokenInd.INPUT.ordinal()]));
+        RC code = inputPoint.parse();
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        outputPoint = new Endpoint(LOGGER, map.get(tokens[tokenInd.OUTPUT.ordinal()]));
+        code = outputPoint.parse();
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        boolean files = inputPoint.isRegularFile() && outputPoint.isRegularFile();
+        if (partitions > 1 && !files) {
+            LOGGER.severe("Partitions require regular input and output files");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (map.containsKey(optionalTokens[optionalTokenInd.CHECKPOINT.ordinal()]) && !files) {
+            LOGGER.severe("Checkpoint requires regular input and output files");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (checksumMode == ChecksumMode.WRITE && !outputPoint.isRegularFile() || checksumMode == ChecksumMode.VERIFY && !files) {
+            LOGGER.severe("Checksums require regular input and output files");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод настройки конвеера
+
+    public RC setPipeline() {
+        RC code = RC.CODE_SUCCESS;
+
+        code = setEndpoints();  // - разбор входа и выхода
+        if (code != RC.CODE_SUCCESS)
+            return code;
+
+        if (partitions > 1)
+            return setPartitions(); // - отдельный конвейер для каждого диапазона файла
+
+        code = setQueue(order); // - создание списка модулей
+        if (code != RC.CODE_SUCCESS)
+            return code;
+
+        if (watchInterval > 0)
+            watcher = new ConfigWatcher(LOGGER, watchInterval); // - наблюдатель за конфигами модулей
+
+        code = reader != null ? setReader() : setReceiver();    // - настройка модуля чтения или приема
+        if (code != RC.CODE_SUCCESS)
+            return code;
+
+        code = setCheckpoint(); // - контрольная точка и продолжение с нее
+        if (code != RC.CODE_SUCCESS)
+            return code;
+
+        code = setExecutors();  // - настройка модулей обработки
+        if (code != RC.CODE_SUCCESS)
+            return code;
+
+        code = setCompressors();    // - настройка модулей сжатия
+        if (code != RC.CODE_SUCCESS)
+            return code;
+
+        code = writer != null ? setWriter() : setSender();  // - настройка модуля записи или отправки
+        if (code != RC.CODE_SUCCESS)
+            return code;
+
+        code = setChecksums();  // - контрольные суммы входа и выхода
+        if (code != RC.CODE_SUCCESS)
+            return code;
+
+        code = optimizePlan();  // - объединение модулей обработки
+        if (code != RC.CODE_SUCCESS)
+            return code;
+
+        if (dataPath == DataPath.DIRECT) {
+            code = source.setDirect();  // - переключение на конвейер буферов вне кучи
+            if (code != RC.CODE_SUCCESS)
+                return code;
+        }
+
+        code = source.reserve(sink.getRetained(source.getChunkSize()));   // - порции, удерживаемые модулем записи
+        if (code != RC.CODE_SUCCESS)
+            return code;
+
+        code = setMetrics();    // - создание счетчиков модулей
+        if (code != RC.CODE_SUCCESS)
+            return code;
+
+        code = setModules();    // - "сборка" конвейера
+        if (code != RC.CODE_SUCCESS)
+            return code;
+
+        if (mode == Mode.CONCURRENT) {
+            code = setChannels();   // - подключение каналов между модулями
+            if (code != RC.CODE_SUCCESS)
+                return code;
+        }
+
+        code = sink.setChunkPool(source.getChunkPool());  // - возврат записанных порций в пул модуля чтения
+        if (code != RC.CODE_SUCCESS)
+            return code;
+
+        code = sink.setBufferPool(source.getBufferPool());    // - возврат записанных буферов в пул модуля чтения
+        if (code != RC.CODE_SUCCESS)
+            return code;
+
+        for (Compressor compressor : compressors) {
+            code = compressor.setPools(source.getChunkPool(), source.getBufferPool());  // - возврат порций, скопированных в блоки сжатия
+            if (code != RC.CODE_SUCCESS)
+                return code;
+        }
+
+        return code;
+    }
+
+    //Метод, запускающий каждый модуль конвейера в собственном потоке и дожидающийся их завершения
+
+    private RC runConcurrent() {
+        RC[] result = {RC.CODE_SUCCESS};    // - код возврата стартового модуля
+        Thread thread = new Thread(() -> result[0] = starter.execute(null), "pipeline-" + starter.getClass().getSimpleName());
+        for (StageChannel channel : channels)
+            channel.start();    // - запуск потоков модулей-потребителей
+        thread.start(); // - запуск стартового модуля
+        RC code = RC.CODE_SUCCESS;
+        try {
+            thread.join();
+            code = result[0];
+            for (StageChannel channel : channels) {
+                if (code != RC.CODE_SUCCESS) {  // - при ошибке оставшиеся модули останавливаются без обработки данных
+                    channel.abort();
+                    continue;
+                }
+                code = channel.join();
+            }
+            for (StageChannel channel : channels)
+                channel.join();
+        } catch (InterruptedException e) {  // - обработка прерывания ожидания
+            for (StageChannel channel : channels)
+                channel.abort();
+            Thread.currentThread().interrupt();
+            LOGGER.severe("Pipeline was interrupted");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        return code;
+    }
+
+    //Метод, копирующий входной файл в выходной средствами ядра без передачи данных через модули
+
+    private RC runCopy() {
+        FileChannel file = (FileChannel) in;    // - копируется только обычный входной файл
+        long start = System.nanoTime();
+        try {
+            long position = partition ? rangeStart : file.position();
+            long size = partition ? rangeEnd : file.size();
+            long length = size - position;  // - объем диапазона или остатка файла после продолженной записи
+            while (position < size)
+                position += file.transferTo(position, size - position, out);
+            metrics.copied(length, System.nanoTime() - start);
+        } catch (IOException e) {   // - обработка исключения
+            LOGGER.severe("Couldn't copy input file to output file");
+            return RC.CODE_FAILED_TO_WRITE;
+        }
+        LOGGER.info("Input file copied");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод, запускающий конвейеры диапазонов в собственных потоках и дожидающийся их завершения
+
+    private RC runPartitions() {
+        List<Thread> threads = new ArrayList<Thread>();
+        RC[] result = new RC[parts.size()]; // - коды возврата конвейеров
+        metrics.start();
+        for (int i = 0; i < parts.size(); i++) {
+            int index = i;
+            Thread thread = new Thread(() -> result[index] = parts.get(index).run(), "pipeline-partition-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        RC code = RC.CODE_SUCCESS;
+        try {
+            for (int i = 0; i < threads.size(); i++) {
+                threads.get(i).join();
+                if (code == RC.CODE_SUCCESS)
+                    code = result[i];   // - возвращается первая ошибка
+            }
+        } catch (InterruptedException e) { // - обработка прерывания ожидания
+            Thread.currentThread().interrupt();
+            LOGGER.severe("Pipeline was interrupted");
+            code = RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        reportMetrics();    // - вывод сводной таблицы счетчиков
+        return code;
+    }
+
+    //Освобождение потоков и компонента JMX конвейера, настройка которого не завершилась (используется режимом демона,
+    //в котором незакрытые дескрипторы накапливались бы от задания к заданию)
+
+    public void release() {
+        try {
+            if (in != null)
+                in.close();
+            if (out != null)
+                out.close();
+        } catch (IOException e) {   // - обработка исключения
+            LOGGER.warning("Streams are not closed");
+        }
+        if (parts != null) {
+            for (Manager part : parts)
+                part.release();
+        }
+        if (metricsName == null)
+            return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+        } catch (JMException e) {
+            LOGGER.warning("Pipeline metrics are not unregistered");
+        }
+        metricsName = null;
+    }
+
+    //Сохранение сумм выхода в режиме verify после сверки входа; при ошибке файл сумм удаляется,
+    //чтобы выход, полученный из измененного входа, не прошел последующую проверку
+
+    private RC saveOutputChecksum(RC code) {
+        if (code == RC.CODE_SUCCESS)
+            return outputChecksum.save(outputChecksumFile);
+        try {
+            Files.deleteIfExists(Paths.get(outputChecksumFile));
+        } catch (IOException | InvalidPathException e) {   // - обработка исключения
+            LOGGER.warning("Couldn't remove " + outputChecksumFile);
+        }
+        LOGGER.warning("Output checksums are not saved: output was produced from input that failed verification");
+        return code;
+    }
+
+    //Метод, запускающий конвеер, а также закрывающий потоки чтения/записи
+
+    public RC run() {
+        RC code = RC.CODE_SUCCESS;
+
+        if (parts != null)
+            return runPartitions(); // - параллельная обработка диапазонов
+        if (!partition)
+            metrics.start();    // - счетчики диапазонов запускает менеджер, разбивший файл
+        if (watcher != null)
+            watcher.start();    // - начало отслеживания конфигов модулей
+        if (checkpoint != null)
+            checkpoint.start((FileChannel) out); // - периодическое сохранение контрольной точки
+        if (copyOnly)
+            code = runCopy();   // - копирование без преобразования
+        else if (mode == Mode.CONCURRENT)
+            code = runConcurrent(); // - запуск конвейера в многопоточном режиме
+        else
+            code = starter.execute(null);    // - запуск конвейера
+        if (watcher != null)
+            watcher.stop();
+        sink.close(); // - остановка фоновой записи
+        for (Executor executor : executors)
+            executor.close();   // - остановка пулов потоков, в том числе после ошибки конвейера
+        for (Compressor compressor : compressors)
+            compressor.close();
+        if (sender != null && code != RC.CODE_SUCCESS)
+            sender.fail(code);  // - получатель не ждет оставшихся данных
+        if (receiver != null)
+            receiver.complete(code);    // - итог конвейера сообщается отправителю
+        if (checkpoint != null) {
+            checkpoint.stop();
+            if (code == RC.CODE_SUCCESS)
+                checkpoint.complete();  // - повторный запуск начнется сначала
+            else
+                checkpoint.commit();    // - сохранение того, что успело записаться до ошибки
+        }
+
+        try {
+            in.close();    // - закрытие потока чтения
+        } catch (IOException e) {   // - обработка исключения
+            LOGGER.severe("Input stream is invalid");
+            code = RC.CODE_INVALID_INPUT_STREAM;
+        }
+        try {
+            out.close();    // - закртыие потока записи
+        } catch (IOException e) {   // - обработка исключения
+            LOGGER.severe("Output stream is invalid");
+            code = RC.CODE_INVALID_OUTPUT_STREAM;
+        }
+        if (outputChecksum != null)
+            code = saveOutputChecksum(code);    // - суммы выхода описывают только проверенный вход
+        reportMetrics();    // - вывод сводной таблицы счетчиков
+        return code;
+    }
+}
@@ -0,0 +1,129 @@
+import java.util.ArrayList;
+import java.util.List;
+
+//Класс счетчиков конвейера, публикуемый через JMX
+
+public class PipelineMetrics implements PipelineMetricsMBean {
+    private final static double MEGABYTE = 1 << 20; // - количество байтов в мегабайте
+    private final static double NANOS_PER_SECOND = 1e9; // - количество наносекунд в секунде
+    private final static double NANOS_PER_MILLI = 1e6;  // - количество наносекунд в миллисекунде
+
+    private final List<StageMetrics> stages = new ArrayList<StageMetrics>();    // - счетчики модулей в порядке конвейера
+
+    private volatile long startNanos;   // - момент запуска конвейера
+    private volatile long finishNanos;  // - момент завершения конвейера
+
+    //Счетчики модуля с заданным именем, создаваемые при первом обращении (общие для одноименных модулей)
+
+    public StageMetrics stage(String name) {
+        for (StageMetrics metrics : stages) {
+            if (metrics.getName().equals(name))
+                return metrics;
+        }
+        StageMetrics metrics = new StageMetrics(name);
+        stages.add(metrics);
+        return metrics;
+    }
+
+    //Счетчики первого модуля конвейера
+
+    private StageMetrics first() {
+        return stages.isEmpty() ? new StageMetrics("") : stages.get(0);
+    }
+
+    //Счетчики последнего модуля конвейера
+
+    private StageMetrics last() {
+        return stages.isEmpty() ? new StageMetrics("") : stages.get(stages.size() - 1);
+    }
+
+    //Отметка запуска конвейера
+
+    public void start() {
+        startNanos = System.nanoTime();
+        finishNanos = 0;
+    }
+
+    //Учет данных, скопированных из входного файла в выходной без прохождения через модули
+
+    public void copied(long bytes, long nanos) {
+        first().chunk(bytes, bytes, nanos);
+        last().written(bytes, nanos);
+    }
+
+    //Отметка завершения конвейера
+
+    public void finish() {
+        finishNanos = System.nanoTime();
+    }
+
+    public long getBytesRead() {
+        return first().getBytesOut();
+    }
+
+    public long getBytesWritten() {
+        return last().getBytesOut();
+    }
+
+    public long getChunks() {
+        return first().getChunks();
+    }
+
+    public long getReadBlockedNanos() {
+        return first().getIoNanos();
+    }
+
+    public long getReadStalls() {
+        return first().getStalls();
+    }
+
+    public long getReadStallNanos() {
+        return first().getStallNanos();
+    }
+
+    public long getWriteSyscalls() {
+        return last().getSyscalls();
+    }
+
+    public long getWriteSyscallsSaved() {
+        return last().getSyscallsSaved();
+    }
+
+    public long getWriteBlockedNanos() {
+        return last().getIoNanos();
+    }
+
+    public long getElapsedNanos() {
+        if (startNanos == 0)
+            return 0;
+        return (finishNanos != 0 ? finishNanos : System.nanoTime()) - startNanos;
+    }
+
+    public double getThroughputMBps() {
+        long elapsed = getElapsedNanos();
+        if (elapsed == 0)
+            return 0;
+        return getBytesWritten() / MEGABYTE / (elapsed / NANOS_PER_SECOND);
+    }
+
+    //Сводная таблица по модулям
+
+    public String getSummary() {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%-10s %14s %14s %10s %10s %10s %10s %10s%n",
+                "Stage", "Bytes in", "Bytes out", "Chunks", "Work ms", "I/O ms", "p50 us", "p99 us"));
+        for (StageMetrics stage : stages) {
+            table.append(String.format("%-10s %14d %14d %10d %10.1f %10.1f %10.1f %10.1f%n",
+                    stage.getName(), stage.getBytesIn(), stage.getBytesOut(), stage.getChunks(),
+                    stage.getWorkNanos() / NANOS_PER_MILLI, stage.getIoNanos() / NANOS_PER_MILLI,
+                    stage.percentile(0.5) / 1e3, stage.percentile(0.99) / 1e3));
+        }
+        if (first().getStalls() > 0)
+            table.append(String.format("Read stalls: %d of %d chunks, %.1f ms%n",
+                    first().getStalls(), first().getChunks(), first().getStallNanos() / NANOS_PER_MILLI));
+        if (last().getSyscalls() > 0)
+            table.append(String.format("Gathering writes: %d syscalls, %d saved%n", last().getSyscalls(), last().getSyscallsSaved()));
+        table.append(String.format("Total: %.1f ms, %.2f MB/s", getElapsedNanos() / NANOS_PER_MILLI, getThroughputMBps()));
+        return table.toString();
+    }
+}
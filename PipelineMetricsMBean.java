@@ -0,0 +1,27 @@
+//Интерфейс управляемого компонента JMX со счетчиками конвейера
+
+public interface PipelineMetricsMBean {
+    long getBytesRead();    // - количество прочитанных байтов
+
+    long getBytesWritten(); // - количество записанных байтов
+
+    long getChunks();   // - количество прочитанных порций
+
+    long getReadBlockedNanos(); // - время ожидания чтения
+
+    long getReadStalls();   // - количество ожиданий конвейером упреждающего чтения
+
+    long getReadStallNanos();   // - время ожидания конвейером упреждающего чтения
+
+    long getWriteBlockedNanos();    // - время ожидания записи
+
+    long getWriteSyscalls();    // - количество вызовов записи со сбором
+
+    long getWriteSyscallsSaved();   // - количество вызовов записи, сэкономленных сбором
+
+    long getElapsedNanos(); // - время работы конвейера
+
+    double getThroughputMBps(); // - пропускная способность конвейера в МБ/с
+
+    String getSummary();    // - сводная таблица по модулям
+}
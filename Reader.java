@@ -1,142 +1,841 @@
-import ru.spbstu.pipeline.IExecutable;
-import ru.spbstu.pipeline.IReader;
-import ru.spbstu.pipeline.RC;
-
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.Map;
-import java.util.logging.Logger;
-
-//Класс модуля чтения данных
-
-public class Reader implements IReader {
-    private static Logger LOGGER;   // - ссылка на логгер
-
-    private final static String[] tokens = {"SIZE_TO_READ"};    // - токен конфига модуля чтения
-
-    private enum tokenInd {SIZE_TO_READ}    // - индекс токена
-
-    private IExecutable producer;   // - ссылка на производителя
-    private IExecutable consumer;   // - ссылка на потребителя
-
-    private FileInputStream fis;    // - поток чтения
-
-    private String configFileName;  // - имя файла конфига
-    private Map<String, String> map;    // - словарь с содержимым конфига
-
-    private int sizeToRead; // - размер порции чтения
-
-    //Конструктор
-
-    public Reader(Logger logger) {
-        LOGGER = logger;
-    }
-
-    //Установка производителя
-
-    public RC setProducer(IExecutable p) {
-        if (p != null) {
-            LOGGER.severe("Wrong producer");
-            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
-        }
-        producer = p;
-        LOGGER.info("Producer set successfully");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Установка потребителя
-
-    public RC setConsumer(IExecutable c) {
-        if (c == null || !(c instanceof Executor)) {
-            LOGGER.severe("Wrong consumer");
-            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
-        }
-        consumer = c;
-        LOGGER.info("Consumer set successfully");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Установка потока чтения
-
-    public RC setInputStream(FileInputStream fis) {
-        this.fis = fis;
-        LOGGER.info("Input stream is set");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Метод, проверящий и обрабатывающий значения токенов в конфиге
-
-    private RC dataValidation() {
-        try {   //Преобразовние строки в целое значение
-            sizeToRead = Integer.parseInt(map.get(tokens[tokenInd.SIZE_TO_READ.ordinal()]));
-        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
-            LOGGER.severe("Invalid " + tokens[tokenInd.SIZE_TO_READ.ordinal()] + " value");
-            return RC.CODE_CONFIG_SEMANTIC_ERROR;
-        }
-        if (sizeToRead < 1) {   // - проверка допустимого диапазона значений
-            LOGGER.severe("Invalid " + tokens[tokenInd.SIZE_TO_READ.ordinal()] + " value");
-            return RC.CODE_CONFIG_SEMANTIC_ERROR;
-        }
-        LOGGER.info(tokens[tokenInd.SIZE_TO_READ.ordinal()] + " value is valid");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Метод чтения и обработки конфига модуля чтения
-
-    private RC readConfig() {
-        BaseSemantics sem = new BaseSemantics(LOGGER, tokens);  // - создание экземпляра класса семантической обработки
-        sem.setConfig(configFileName);  // - установка конфига менеджера
-        RC code = sem.readConfig(); // - чтение и парсинг конфига
-        if (code != RC.CODE_SUCCESS)
-            return code;
-        code = sem.run();   // - проведение семантического анализа
-        if (code != RC.CODE_SUCCESS)
-            return code;
-        map = sem.getMap(); // - получение обработанного содержимого конфига
-        code = dataValidation();    // - обработка содержимого конфига
-        if (code != RC.CODE_SUCCESS)
-            return code;
-        LOGGER.info("Reader config file read successfully");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Метод установки имени конфига, а также работы с ним
-
-    public RC setConfig(String configFileName) {
-        if (configFileName == null) {
-            LOGGER.severe("Null pointer");
-            return RC.CODE_INVALID_ARGUMENT;
-        }
-        this.configFileName = configFileName;
-        LOGGER.info("Config file name is set");
-        return readConfig();
-    }
-
-    //Метод выполненяющий чтения данных, а также запуск модуля потребителя
-
-    public RC execute(byte[] data) {
-        RC code = RC.CODE_SUCCESS;
-        int flag = 0;
-        while (true) {
-            byte[] buffer = new byte[sizeToRead];   // - буфер для порции байтов
-            try {
-                flag = fis.readNBytes(buffer, 0, sizeToRead);   // - чтение
-            } catch (IOException e) {   // - обработка исключения
-                LOGGER.severe("Couldn't read data from input file");
-                return RC.CODE_FAILED_TO_READ;
-            }
-            if (flag < sizeToRead && flag != 0) {    // - обработка случая чтения неполной порции байтов
-                LOGGER.severe("Incomplete data");
-                return RC.CODE_FAILED_TO_READ;
-            }
-            if (flag == 0) {    // - обработка случая достижения конца файла
-                LOGGER.info("All the data was read successfully");
-                return consumer.execute(null);
-            }
-            LOGGER.info("Portion data was read successfully");
-            code = consumer.execute(buffer);    // - запуск модуля потребителя
-            if (code != RC.CODE_SUCCESS)
-                return code;
-        }
-    }
-}
+import ru.spbstu.pipeline.IExecutable;
+import ru.spbstu.pipeline.IReader;
+import ru.spbstu.pipeline.RC;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+//Класс модуля чтения данных
+
+public class Reader implements IReader, ChunkSource {
+    private static Logger LOGGER;   // - ссылка на логгер
+
+    private final static String[] tokens = {"SIZE_TO_READ"};    // - токен конфига модуля чтения
+
+    private enum tokenInd {SIZE_TO_READ}    // - индекс токена
+
+    private final static String[] optionalTokens = {"READ_MODE", "POOL_SIZE", "IDLE_TIMEOUT", "READ_AHEAD",
+            "MIN_SIZE_TO_READ", "MAX_SIZE_TO_READ"};   // - необязательные токены конфига модуля чтения
+
+    private enum optionalTokenInd {READ_MODE, POOL_SIZE, IDLE_TIMEOUT, READ_AHEAD, MIN_SIZE_TO_READ, MAX_SIZE_TO_READ}  // - индексы необязательных токенов
+
+    //Принимаемые значения режима чтения
+
+    private final static String[] readModeVal = {"stream", "mmap", "follow"};
+
+    private enum ReadMode {STREAM, MMAP, FOLLOW}    // - представление для хранения режима чтения
+
+    private final static long MAP_WINDOW_SIZE = 64L << 20;  // - размер отображаемого в память окна файла
+    private final static String GZIP_SUFFIX = ".gz";    // - расширение входного файла, сжатого gzip
+    private final static int GZIP_BUFFER_SIZE = 64 << 10;   // - размер буфера чтения сжатых данных
+    private final static int DEFAULT_POOL_SIZE = 8; // - размер пула порций по умолчанию
+    private final static int DEFAULT_IDLE_TIMEOUT = 10000;  // - время ожидания новых данных в режиме follow по умолчанию, мс
+    private final static long MIN_BACKOFF = 10; // - начальная пауза ожидания новых данных, мс
+    private final static long MAX_BACKOFF = 1000;   // - наибольшая пауза ожидания новых данных, мс
+
+    private IExecutable producer;   // - ссылка на производителя
+    private IExecutable consumer;   // - ссылка на потребителя
+    private IBufferExecutable bufferConsumer;   // - потребитель в конвейере буферов
+
+    private InputStream stream; // - поток чтения
+    private ReadableByteChannel channel;    // - канал чтения того же источника
+
+    private String configFileName;  // - имя файла конфига
+    private Map<String, String> map;    // - словарь с содержимым конфига
+
+    private int sizeToRead; // - размер порции чтения
+    private AutoTuner tuner;    // - подбор размера порции при значении auto (null - размер задан)
+    private ReadMode readMode;  // - режим чтения
+    private int poolSize;   // - размер пула порций
+    private int idleTimeout;    // - время ожидания новых данных в режиме follow, мс
+    private int readAhead;  // - количество порций, читаемых заранее (0 - без упреждающего чтения)
+    private String inputPath;   // - путь к входному файлу для отслеживания его изменений
+    private boolean gzip;   // - входной файл сжат gzip и распаковывается при чтении
+    private BlockChecksum expected; // - сохраненные суммы входного файла для проверки (null - без проверки)
+    private long rangeStart;    // - начало читаемого диапазона файла
+    private long rangeEnd = -1; // - конец читаемого диапазона файла (-1 - файл читается целиком)
+    private ChunkPool pool; // - пул переиспользуемых порций
+    private BufferPool bufferPool;  // - пул буферов вне кучи, null - порции передаются массивами
+    private StageMetrics metrics = new StageMetrics(Reader.class.getSimpleName());  // - счетчики модуля
+    private ChunkLog chunkLog;  // - сводка прочитанных порций для лога
+
+    //Конструктор
+
+    public Reader(Logger logger) {
+        LOGGER = logger;
+        chunkLog = new ChunkLog(logger, Reader.class, "Portion data was read successfully");
+    }
+
+    //Установка производителя
+
+    public RC setProducer(IExecutable p) {
+        if (p != null) {
+            LOGGER.severe("Wrong producer");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        producer = p;
+        LOGGER.info("Producer set successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка потребителя
+
+    public RC setConsumer(IExecutable c) {
+        if (c == null || !(c instanceof Executor || c instanceof Compressor || c instanceof Sender || c instanceof StageChannel)) {
+            LOGGER.severe("Wrong consumer");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        consumer = c;
+        bufferConsumer = c instanceof IBufferExecutable ? (IBufferExecutable) c : new BufferAdapter(c, bufferPool);
+        LOGGER.info("Consumer set successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка потока чтения
+
+    public RC setInputStream(FileInputStream fis) {
+        stream = fis;
+        channel = fis.getChannel();
+        LOGGER.info("Input stream is set");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка канала чтения (сокета), для которого нет файлового потока
+
+    public RC setInputChannel(ReadableByteChannel channel) {
+        if (channel == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        this.channel = channel;
+        stream = Channels.newInputStream(channel);
+        LOGGER.info("Input channel is set");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка пути к входному файлу, изменения которого отслеживаются в режиме follow
+
+    public RC setInputPath(String inputPath) {
+        this.inputPath = inputPath;
+        gzip = inputPath != null && inputPath.toLowerCase().endsWith(GZIP_SUFFIX);
+        if (gzip)
+            LOGGER.info("Input is compressed, it is decompressed while reading");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод, проверящий и обрабатывающий значения токенов в конфиге
+
+    private RC dataValidation() {
+        String value = map.get(tokens[tokenInd.SIZE_TO_READ.ordinal()]);
+        boolean auto = value.toLowerCase().equals(AutoTuner.AUTO);  // - размер подбирается во время работы
+        int min = AutoTuner.DEFAULT_MIN, max = AutoTuner.DEFAULT_MAX;
+        try {   //Преобразовние строки в целое значение
+            sizeToRead = auto ? AutoTuner.DEFAULT_SIZE : Integer.parseInt(value);
+            if (map.containsKey(optionalTokens[optionalTokenInd.MIN_SIZE_TO_READ.ordinal()]))
+                min = Integer.parseInt(map.get(optionalTokens[optionalTokenInd.MIN_SIZE_TO_READ.ordinal()]));
+            if (map.containsKey(optionalTokens[optionalTokenInd.MAX_SIZE_TO_READ.ordinal()]))
+                max = Integer.parseInt(map.get(optionalTokens[optionalTokenInd.MAX_SIZE_TO_READ.ordinal()]));
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + tokens[tokenInd.SIZE_TO_READ.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (sizeToRead < 1 || min < 1 || max < min) {  // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + tokens[tokenInd.SIZE_TO_READ.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        tuner = null;
+        if (auto) {
+            tuner = new AutoTuner(LOGGER, tokens[tokenInd.SIZE_TO_READ.ordinal()], sizeToRead, min, max);
+            sizeToRead = tuner.size();
+        }
+        LOGGER.info(tokens[tokenInd.SIZE_TO_READ.ordinal()] + " value is valid");
+
+        //Установка режима чтения
+
+        String mode = map.get(optionalTokens[optionalTokenInd.READ_MODE.ordinal()]);
+        if (mode == null || mode.toLowerCase().equals(readModeVal[ReadMode.STREAM.ordinal()]))
+            readMode = ReadMode.STREAM;
+        else if (mode.toLowerCase().equals(readModeVal[ReadMode.MMAP.ordinal()]))
+            readMode = ReadMode.MMAP;
+        else if (mode.toLowerCase().equals(readModeVal[ReadMode.FOLLOW.ordinal()]))
+            readMode = ReadMode.FOLLOW;
+        else {  //Обработка случая неверного значения режима чтения
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.READ_MODE.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        LOGGER.info(optionalTokens[optionalTokenInd.READ_MODE.ordinal()] + " value is valid");
+
+        //Установка размера пула порций
+
+        String size = map.get(optionalTokens[optionalTokenInd.POOL_SIZE.ordinal()]);
+        poolSize = DEFAULT_POOL_SIZE;
+        try {
+            if (size != null)
+                poolSize = Integer.parseInt(size);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.POOL_SIZE.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (poolSize < 1) { // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.POOL_SIZE.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        LOGGER.info(optionalTokens[optionalTokenInd.POOL_SIZE.ordinal()] + " value is valid");
+
+        //Установка времени ожидания новых данных
+
+        String timeout = map.get(optionalTokens[optionalTokenInd.IDLE_TIMEOUT.ordinal()]);
+        idleTimeout = DEFAULT_IDLE_TIMEOUT;
+        try {
+            if (timeout != null)
+                idleTimeout = Integer.parseInt(timeout);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.IDLE_TIMEOUT.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (idleTimeout < 0) {  // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.IDLE_TIMEOUT.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        LOGGER.info(optionalTokens[optionalTokenInd.IDLE_TIMEOUT.ordinal()] + " value is valid");
+
+        //Установка количества порций упреждающего чтения
+
+        String ahead = map.get(optionalTokens[optionalTokenInd.READ_AHEAD.ordinal()]);
+        readAhead = 0;
+        try {
+            if (ahead != null)
+                readAhead = Integer.parseInt(ahead);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.READ_AHEAD.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (readAhead < 0) {    // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.READ_AHEAD.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        LOGGER.info(optionalTokens[optionalTokenInd.READ_AHEAD.ordinal()] + " value is valid");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод чтения и обработки конфига модуля чтения
+
+    private RC readConfig() {
+        BaseSemantics sem = new BaseSemantics(LOGGER, tokens, optionalTokens);  // - создание экземпляра класса семантической обработки
+        sem.setConfig(configFileName);  // - установка конфига менеджера
+        RC code = sem.readConfig(); // - чтение и парсинг конфига
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        code = sem.run();   // - проведение семантического анализа
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        map = sem.getMap(); // - получение обработанного содержимого конфига
+        code = dataValidation();    // - обработка содержимого конфига
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        poolSize += readAhead;  // - порции, прочитанные заранее, тоже берутся из пула
+        pool = new ChunkPool(poolSize, sizeToRead); // - создание пула порций
+        LOGGER.info("Reader config file read successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод установки имени конфига, а также работы с ним
+
+    public RC setConfig(String configFileName) {
+        if (configFileName == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        this.configFileName = configFileName;
+        LOGGER.info("Config file name is set");
+        return readConfig();
+    }
+
+    //Установка счетчиков модуля
+
+    public RC setMetrics(StageMetrics metrics) {
+        this.metrics = metrics;
+        return RC.CODE_SUCCESS;
+    }
+
+    //Переключение на конвейер буферов: порции читаются из канала файла в буферы вне кучи
+
+    public RC setDirect() {
+        if (readMode == ReadMode.FOLLOW) {
+            LOGGER.severe("Follow mode doesn't support direct buffers");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        bufferPool = new BufferPool(poolSize, sizeToRead);
+        LOGGER.info("Direct buffers are used");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Увеличение пулов на количество порций, удерживаемых последним модулем до их записи
+
+    public RC reserve(int chunks) {
+        if (chunks <= 0)
+            return RC.CODE_SUCCESS;
+        poolSize += chunks;
+        pool = new ChunkPool(poolSize, sizeToRead);
+        if (bufferPool != null)
+            bufferPool = new BufferPool(poolSize, sizeToRead);
+        LOGGER.info("Pool size is increased to " + poolSize);
+        return RC.CODE_SUCCESS;
+    }
+
+    //Ограничение чтения диапазоном байтов файла: порции читаются позиционно, позиция потока не используется
+
+    public RC setRange(long from, long to) {
+        if (from < 0 || to < from) {
+            LOGGER.severe("Invalid range");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        if (readMode == ReadMode.FOLLOW || gzip || !(channel instanceof FileChannel)) {
+            LOGGER.severe("Follow mode, compressed input and sockets don't support ranges");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        rangeStart = from;
+        rangeEnd = to;
+        LOGGER.info("Reading range " + from + " - " + to);
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка сохраненных контрольных сумм: суммы прочитанных данных считаются по ходу чтения и сравниваются с ними
+
+    public RC setVerify(BlockChecksum expected) {
+        if (expected == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        this.expected = expected;
+        LOGGER.info("Input checksums are verified");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Сравнение сумм прочитанных данных с сохраненными и вывод изменившихся блоков
+
+    private RC verify(BlockChecksum actual) {
+        if (actual.matches(expected)) {
+            LOGGER.info("Input checksums match");
+            return RC.CODE_SUCCESS;
+        }
+        List<Integer> changed = actual.changedBlocks(expected);
+        LOGGER.severe("Input checksums don't match, changed blocks of " + expected.getBlockSize() + " bytes: " + changed);
+        return RC.CODE_FAILED_TO_READ;
+    }
+
+    //Метод, возвращающий размер порции чтения
+
+    public int getChunkSize() {
+        return sizeToRead;
+    }
+
+    //Метод, возвращающий пул буферов для передачи последнему модулю конвейера
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    //Метод, возвращающий пул порций для передачи последнему модулю конвейера
+
+    public ChunkPool getChunkPool() {
+        return pool;
+    }
+
+    //Метод, передающий потребителю признак конца данных и выводящий статистику пула
+
+    private RC finish() {
+        chunkLog.finish();
+        LOGGER.info("All the data was read successfully");
+        if (bufferPool != null) {
+            LOGGER.info(bufferPool.stats());
+            return bufferConsumer.execute(null);
+        }
+        LOGGER.info(pool.stats());
+        return consumer.execute(null);
+    }
+
+    //Учет порции при автоматическом подборе размера и смена размера порции по его результату
+
+    private void tune(long bytes, long nanos) {
+        if (tuner == null)
+            return;
+        int size = tuner.observe(bytes, nanos);
+        if (size == sizeToRead)
+            return;
+        sizeToRead = size;
+        pool.resize(size);
+        if (bufferPool != null)
+            bufferPool.resize(size);
+    }
+
+    //Метод, выполняющий чтение данных из канала файла в буферы вне кучи
+
+    private RC readChannel() {
+        RC code = RC.CODE_SUCCESS;
+        while (true) {
+            ByteBuffer buffer = bufferPool.acquire();   // - буфер для порции байтов
+            buffer.limit(sizeToRead);
+            long start = System.nanoTime();
+            try {
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0); // - чтение до заполнения порции или конца файла
+            } catch (IOException e) {   // - обработка исключения
+                LOGGER.severe("Couldn't read data from input file");
+                return RC.CODE_FAILED_TO_READ;
+            }
+            int flag = buffer.position();
+            if (flag < sizeToRead && flag != 0 && tuner == null) {  // - обработка случая чтения неполной порции байтов
+                LOGGER.severe("Incomplete data");
+                return RC.CODE_FAILED_TO_READ;
+            }
+            if (flag == 0) {    // - обработка случая достижения конца файла
+                bufferPool.release(buffer);
+                return finish();
+            }
+            buffer.flip();
+            long nanos = System.nanoTime() - start;
+            metrics.io(nanos);
+            metrics.chunk(flag, flag, nanos);
+            chunkLog.hit(flag);
+            code = bufferConsumer.execute(buffer);  // - запуск модуля потребителя
+            if (code != RC.CODE_SUCCESS)
+                return code;
+            tune(flag, System.nanoTime() - start);
+        }
+    }
+
+    //Метод, выполняющий позиционное чтение диапазона файла в массивы либо в буферы вне кучи
+
+    private RC readRange() {
+        RC code = RC.CODE_SUCCESS;
+        FileChannel file = (FileChannel) channel;   // - диапазоны задаются только для файлов
+        long position = rangeStart;
+        while (position < rangeEnd) {
+            int length = (int) Math.min(sizeToRead, rangeEnd - position);
+            if (length < sizeToRead && tuner == null) { // - обработка случая неполной порции в конце файла
+                LOGGER.severe("Incomplete data");
+                return RC.CODE_FAILED_TO_READ;
+            }
+            byte[] chunk = bufferPool == null ? pool.acquire() : null;  // - порция для конвейера массивов
+            ByteBuffer buffer = chunk == null ? bufferPool.acquire() : ByteBuffer.wrap(chunk);
+            buffer.limit(length);
+            long start = System.nanoTime();
+            try {
+                while (buffer.hasRemaining() && file.read(buffer, position + buffer.position()) >= 0);   // - чтение с заданного смещения
+            } catch (IOException e) {   // - обработка исключения
+                LOGGER.severe("Couldn't read data from input file");
+                return RC.CODE_FAILED_TO_READ;
+            }
+            if (buffer.hasRemaining()) {    // - файл стал короче диапазона
+                LOGGER.severe("Incomplete data");
+                return RC.CODE_FAILED_TO_READ;
+            }
+            long nanos = System.nanoTime() - start;
+            metrics.io(nanos);
+            metrics.chunk(length, length, nanos);
+            chunkLog.hit(length);
+            buffer.flip();
+            if (chunk == null)
+                code = bufferConsumer.execute(buffer);  // - запуск модуля потребителя
+            else
+                code = consumer.execute(length < chunk.length ? Arrays.copyOf(chunk, length) : chunk);
+            if (code != RC.CODE_SUCCESS)
+                return code;
+            position += length;
+            tune(length, System.nanoTime() - start);
+        }
+        return finish();
+    }
+
+    //Метод, выполняющий чтение с распаковкой gzip (в том числе из нескольких последовательных членов);
+    //длина распакованных данных заранее неизвестна, поэтому последняя порция может быть неполной
+
+    private RC readCompressed() {
+        RC code = RC.CODE_SUCCESS;
+        if (readMode != ReadMode.STREAM)
+            LOGGER.warning("Compressed input is read in stream mode");
+        GZIPInputStream in;
+        try {
+            in = new GZIPInputStream(stream, GZIP_BUFFER_SIZE);
+        } catch (IOException e) {   // - обработка исключения неверного формата
+            LOGGER.severe("Input is not in gzip format");
+            return RC.CODE_FAILED_TO_READ;
+        }
+        while (true) {
+            byte[] chunk = pool.acquire();  // - буфер для порции байтов
+            long start = System.nanoTime();
+            int flag;
+            try {
+                flag = in.readNBytes(chunk, 0, sizeToRead); // - чтение с распаковкой
+            } catch (IOException e) {   // - обработка исключения
+                LOGGER.severe("Couldn't read data from input file");
+                return RC.CODE_FAILED_TO_READ;
+            }
+            if (flag == 0) {    // - обработка случая достижения конца данных
+                pool.release(chunk);
+                try {
+                    in.close(); // - освобождение распаковщика
+                } catch (IOException e) {
+                    LOGGER.warning("Input stream is not closed");
+                }
+                return finish();
+            }
+            long nanos = System.nanoTime() - start;
+            metrics.io(nanos);
+            metrics.chunk(flag, flag, nanos);
+            chunkLog.hit(flag);
+            if (bufferPool != null) {   // - распакованная порция копируется в буфер вне кучи
+                ByteBuffer buffer = bufferPool.acquire();
+                buffer.put(chunk, 0, flag).flip();
+                pool.release(chunk);
+                code = bufferConsumer.execute(buffer);
+            } else
+                code = consumer.execute(flag < chunk.length ? Arrays.copyOf(chunk, flag) : chunk);
+            if (code != RC.CODE_SUCCESS)
+                return code;
+            tune(flag, System.nanoTime() - start);
+        }
+    }
+
+    //Метод, выполняющий чтение данных из потока
+
+    private RC readStream() {
+        RC code = RC.CODE_SUCCESS;
+        int flag = 0;
+        while (true) {
+            byte[] buffer = pool.acquire(); // - буфер для порции байтов
+            long start = System.nanoTime();
+            try {
+                flag = stream.readNBytes(buffer, 0, sizeToRead);   // - чтение
+            } catch (IOException e) {   // - обработка исключения
+                LOGGER.severe("Couldn't read data from input file");
+                return RC.CODE_FAILED_TO_READ;
+            }
+            if (flag < sizeToRead && flag != 0) {    // - обработка случая чтения неполной порции байтов
+                if (tuner == null) {
+                    LOGGER.severe("Incomplete data");
+                    return RC.CODE_FAILED_TO_READ;
+                }
+                buffer = Arrays.copyOf(buffer, flag);   // - при подборе размера последняя порция может быть неполной
+            }
+            if (flag == 0) {    // - обработка случая достижения конца файла
+                pool.release(buffer);
+                return finish();
+            }
+            long nanos = System.nanoTime() - start;
+            metrics.io(nanos);
+            metrics.chunk(flag, flag, nanos);
+            chunkLog.hit(flag);
+            code = consumer.execute(buffer);    // - запуск модуля потребителя
+            if (code != RC.CODE_SUCCESS)
+                return code;
+            tune(flag, System.nanoTime() - start);
+        }
+    }
+
+    //Метод, выполняющий чтение данных через отображение файла в память скользящими окнами
+
+    private RC readMapped() {
+        RC code = RC.CODE_SUCCESS;
+        if (tuner != null)  // - окна отображения кратны размеру порции, поэтому он не меняется
+            tuner.keep("mmap mode");
+        if (!(channel instanceof FileChannel)) {    // - сокет в память не отображается
+            LOGGER.info("Nothing to map, stream mode is used");
+            return bufferPool != null ? readChannel() : readStream();
+        }
+        FileChannel file = (FileChannel) channel;
+        long position, size;
+        try {
+            position = file.position();
+            size = file.size();
+        } catch (IOException e) {   // - поток не поддерживает отображение, чтение в обычном режиме
+            LOGGER.warning("Input can't be mapped, stream mode is used");
+            return bufferPool != null ? readChannel() : readStream();
+        }
+        if (size <= position) { // - каналы и пустые файлы читаются в обычном режиме
+            LOGGER.info("Nothing to map, stream mode is used");
+            return bufferPool != null ? readChannel() : readStream();
+        }
+
+        long windowSize = Math.max(sizeToRead, MAP_WINDOW_SIZE / sizeToRead * sizeToRead);  // - окно кратно порции чтения
+        while (position < size) {
+            long length = Math.min(windowSize, size - position);
+            MappedByteBuffer window;
+            try {
+                window = file.map(FileChannel.MapMode.READ_ONLY, position, length);  // - отображение очередного окна
+            } catch (IOException | UnsupportedOperationException e) {
+                LOGGER.warning("Input can't be mapped, stream mode is used");
+                try {
+                    file.position(position); // - продолжение чтения потоком с текущей позиции
+                } catch (IOException ex) {
+                    LOGGER.severe("Couldn't read data from input file");
+                    return RC.CODE_FAILED_TO_READ;
+                }
+                return bufferPool != null ? readChannel() : readStream();
+            }
+            while (bufferPool != null && window.remaining() >= sizeToRead) {
+                ByteBuffer buffer = bufferPool.acquire();   // - буфер для порции байтов
+                ByteBuffer chunk = window.slice();
+                chunk.limit(sizeToRead);
+                long start = System.nanoTime();
+                buffer.put(chunk).flip();   // - копирование порции окна в буфер вне кучи (окно открыто только для чтения)
+                window.position(window.position() + sizeToRead);
+                long nanos = System.nanoTime() - start;
+                metrics.io(nanos);
+                metrics.chunk(sizeToRead, sizeToRead, nanos);
+                chunkLog.hit(sizeToRead);
+                code = bufferConsumer.execute(buffer);  // - запуск модуля потребителя
+                if (code != RC.CODE_SUCCESS)
+                    return code;
+            }
+            while (window.remaining() >= sizeToRead) {
+                byte[] buffer = pool.acquire(); // - буфер для порции байтов
+                long start = System.nanoTime();
+                window.get(buffer); // - копирование порции из отображенного окна (с ожиданием подкачки страниц)
+                long nanos = System.nanoTime() - start;
+                metrics.io(nanos);
+                metrics.chunk(sizeToRead, sizeToRead, nanos);
+                chunkLog.hit(sizeToRead);
+                code = consumer.execute(buffer);    // - запуск модуля потребителя
+                if (code != RC.CODE_SUCCESS)
+                    return code;
+            }
+            if (window.hasRemaining() && tuner == null) {   // - неполная порция возможна только в конце файла
+                LOGGER.severe("Incomplete data");
+                return RC.CODE_FAILED_TO_READ;
+            }
+            if (window.hasRemaining()) {    // - при подборе размера последняя порция может быть неполной
+                int rest = window.remaining();
+                metrics.chunk(rest, rest, 0);
+                chunkLog.hit(rest);
+                if (bufferPool != null) {
+                    ByteBuffer buffer = bufferPool.acquire();
+                    buffer.put(window).flip();
+                    code = bufferConsumer.execute(buffer);
+                } else {
+                    byte[] buffer = new byte[rest];
+                    window.get(buffer);
+                    code = consumer.execute(buffer);
+                }
+                if (code != RC.CODE_SUCCESS)
+                    return code;
+            }
+            position += length;
+        }
+        try {
+            file.position(position); // - согласование позиции потока с прочитанными данными
+        } catch (IOException e) {
+            LOGGER.severe("Couldn't read data from input file");
+            return RC.CODE_FAILED_TO_READ;
+        }
+        return finish();
+    }
+
+    //Создание службы отслеживания изменений каталога входного файла, либо null, если это невозможно
+
+    private WatchService watchInput() {
+        if (inputPath == null)
+            return null;
+        Path dir = Paths.get(inputPath).toAbsolutePath().getParent();
+        try {
+            WatchService watcher = dir.getFileSystem().newWatchService();
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_MODIFY);
+            return watcher;
+        } catch (IOException | UnsupportedOperationException e) {   // - ожидание без отслеживания, только паузами
+            LOGGER.warning("Input file is not watched");
+            return null;
+        }
+    }
+
+    //Ожидание изменения входного файла не дольше заданной паузы
+
+    private void awaitData(WatchService watcher, long millis) throws InterruptedException {
+        if (watcher == null) {
+            Thread.sleep(millis);
+            return;
+        }
+        WatchKey key = watcher.poll(millis, TimeUnit.MILLISECONDS);
+        if (key != null) {
+            key.pollEvents();   // - события не разбираются: после пробуждения файл просто дочитывается
+            key.reset();
+        }
+    }
+
+    //Метод, читающий дописываемый файл: целые порции передаются по мере появления,
+    //ожидание новых данных идет с нарастающей паузой до истечения времени простоя. Перед ожиданием
+    //неполная порция передается дальше, а модули получают сигнал о сбросе накопленных данных,
+    //поэтому выход отстает от входа не больше чем на одну паузу
+
+    private RC readFollow() {
+        RC code = RC.CODE_SUCCESS;
+        if (tuner != null)  // - скорость чтения дописываемого файла задает источник данных
+            tuner.keep("follow mode");
+        WatchService watcher = watchInput();
+        byte[] buffer = pool.acquire(); // - буфер для порции байтов
+        int filled = 0; // - количество уже прочитанных байтов порции
+        long backoff = MIN_BACKOFF;
+        long idleSince = System.currentTimeMillis();
+        boolean unflushed = false;  // - после последнего сброса модулям передавались данные
+        try {
+            while (true) {
+                long start = System.nanoTime();
+                int count;
+                try {
+                    count = stream.read(buffer, filled, sizeToRead - filled);  // - чтение доступной части порции
+                } catch (IOException e) {   // - обработка исключения
+                    LOGGER.severe("Couldn't read data from input file");
+                    return RC.CODE_FAILED_TO_READ;
+                }
+                metrics.io(System.nanoTime() - start);
+                if (count > 0) {
+                    filled += count;
+                    backoff = MIN_BACKOFF;
+                    idleSince = System.currentTimeMillis();
+                    if (filled < sizeToRead)
+                        continue;
+                    metrics.chunk(filled, filled, System.nanoTime() - start);
+                    chunkLog.hit(filled);
+                    code = consumer.execute(buffer);    // - запуск модуля потребителя для целой порции
+                    if (code != RC.CODE_SUCCESS)
+                        return code;
+                    buffer = pool.acquire();
+                    filled = 0;
+                    unflushed = true;
+                    continue;
+                }
+                if (System.currentTimeMillis() - idleSince >= idleTimeout)  // - данных нет дольше времени простоя
+                    break;
+                if (filled > 0) {   // - неполная порция не ждет дописывания файла
+                    metrics.chunk(filled, filled, 0);
+                    chunkLog.hit(filled);
+                    code = consumer.execute(Arrays.copyOf(buffer, filled));
+                    if (code != RC.CODE_SUCCESS)
+                        return code;
+                    filled = 0;
+                    unflushed = true;
+                }
+                if (unflushed) {    // - накопленные модулями данные записываются до начала ожидания
+                    code = IFlushable.forward(consumer);
+                    if (code != RC.CODE_SUCCESS)
+                        return code;
+                    unflushed = false;
+                }
+                try {
+                    awaitData(watcher, backoff);
+                } catch (InterruptedException e) {  // - прерывание завершает чтение как конец данных
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF);
+            }
+        } finally {
+            if (watcher != null) {
+                try {
+                    watcher.close();
+                } catch (IOException e) {
+                    LOGGER.warning("Input watcher is not closed");
+                }
+            }
+        }
+        if (filled > 0) {   // - передача неполной последней порции при завершении
+            LOGGER.info("Incomplete final portion is passed");
+            metrics.chunk(filled, filled, 0);
+            chunkLog.hit(filled);
+            code = consumer.execute(Arrays.copyOf(buffer, filled));
+            if (code != RC.CODE_SUCCESS)
+                return code;
+        }
+        pool.release(buffer);
+        return finish();
+    }
+
+    //Выбор способа чтения по режиму
+
+    private RC read() {
+        if (gzip)
+            return readCompressed();
+        if (rangeEnd >= 0)
+            return readRange();
+        if (readMode == ReadMode.FOLLOW)
+            return readFollow();
+        if (readMode == ReadMode.MMAP)
+            return readMapped();
+        if (bufferPool != null)
+            return readChannel();
+        return readStream();
+    }
+
+    //Упреждающее чтение: потребитель работает в отдельном потоке и получает порции через канал,
+    //а чтение продолжается, пока в канале есть место
+
+    private RC readAhead() {
+        IExecutable target = consumer;
+        IBufferExecutable bufferTarget = bufferConsumer;
+        StageChannel ahead = new StageChannel(LOGGER, target, readAhead);
+        consumer = ahead;   // - модуль чтения передает порции в канал вместо потребителя
+        bufferConsumer = ahead;
+        ahead.start();
+        RC code = read();
+        try {
+            if (code != RC.CODE_SUCCESS) {  // - при ошибке потребитель останавливается без обработки оставшихся порций
+                ahead.abort();
+                ahead.join();
+            } else
+                code = ahead.join();
+        } catch (InterruptedException e) {
+            ahead.abort();
+            Thread.currentThread().interrupt();
+            code = RC.CODE_FAILED_TO_READ;
+        }
+        consumer = target;
+        bufferConsumer = bufferTarget;
+        metrics.stalled(ahead.getWaits(), ahead.getWaitNanos());
+        LOGGER.info("Read-ahead: consumer waited " + ahead.getWaits() + " times, " + ahead.getWaitNanos() / 1_000_000 + " ms");
+        return code;
+    }
+
+    //Метод выполненяющий чтения данных, а также запуск модуля потребителя
+
+    public RC execute(byte[] data) {
+        boolean channelled = consumer instanceof StageChannel;  // - следующий модуль работает в своем потоке
+        IExecutable target = consumer;
+        IBufferExecutable bufferTarget = bufferConsumer;
+        BlockChecksum actual = null;
+        if (expected != null) { // - порции учитываются в суммах до передачи следующему модулю
+            actual = new BlockChecksum(LOGGER, expected.getBlockSize());
+            ChecksumTap tap = new ChecksumTap(actual, target, bufferTarget);
+            consumer = tap;
+            bufferConsumer = tap;
+        }
+        RC code;
+        if (readAhead > 0 && channelled) { // - в многопоточном режиме порции и так читаются заранее
+            LOGGER.info("Read-ahead is provided by the pipeline channel");
+            code = read();
+        } else if (readAhead > 0)
+            code = readAhead();
+        else
+            code = read();
+        consumer = target;
+        bufferConsumer = bufferTarget;
+        if (code == RC.CODE_SUCCESS && actual != null)
+            code = verify(actual);
+        return code;
+    }
+}
@@ -0,0 +1,279 @@
+import ru.spbstu.pipeline.IExecutable;
+import ru.spbstu.pipeline.IExecutor;
+import ru.spbstu.pipeline.RC;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.logging.Logger;
+
+//Класс модуля приема: стартовый модуль конвейера, получающий порции по сокету от отправителя в другой JVM
+//и передающий их следующему модулю. Отправителю выдаются кредиты по мере передачи порций дальше,
+//поэтому отправитель не может опередить получателя больше чем на CREDITS порций
+
+public class Receiver implements IExecutor, ChunkSource {
+    private static Logger LOGGER;   // - ссылка на логгер
+
+    private IExecutable producer;   // - ссылка на производителя
+    private IExecutable consumer;   // - ссылка на потребителя
+    private IBufferExecutable bufferConsumer;   // - потребитель буферов вне кучи (null - передаются массивы)
+
+    private RemoteConfig config;    // - конфиг удаленной передачи
+    private SocketChannel channel;  // - соединение с отправителем
+    private final ByteBuffer header = ByteBuffer.allocateDirect(Frame.HEADER_SIZE);   // - заголовок кадра
+    private final ByteBuffer lengths = ByteBuffer.allocateDirect(Frame.MAX_CHUNKS * Integer.BYTES);  // - длины порций кадра
+    private final ByteBuffer reply = ByteBuffer.allocate(Integer.BYTES);  // - ответ отправителю
+    private int chunkSize;  // - размер последней принятой порции
+    private int poolSize;   // - количество порций в пулах
+    private long expected;  // - номер следующей ожидаемой порции
+    private ChunkPool pool; // - пул порций
+    private BufferPool bufferPool;  // - пул буферов вне кучи (null - буферы не используются)
+    private StageMetrics metrics = new StageMetrics(Receiver.class.getSimpleName()); // - счетчики модуля
+    private ChunkLog chunkLog;  // - сводка принятых порций для лога
+
+    //Конструктор
+
+    public Receiver(Logger logger) {
+        LOGGER = logger;
+        config = new RemoteConfig(logger);
+        chunkLog = new ChunkLog(logger, Receiver.class, "Receiving data from sender");
+    }
+
+    //Установка производителя
+
+    public RC setProducer(IExecutable p) {
+        if (p != null) {
+            LOGGER.severe("Wrong producer");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        producer = p;
+        LOGGER.info("Producer set successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка потребителя
+
+    public RC setConsumer(IExecutable c) {
+        if (c == null || !(c instanceof Executor || c instanceof Compressor || c instanceof Writer || c instanceof Sender
+                || c instanceof StageChannel)) {
+            LOGGER.severe("Wrong consumer");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        consumer = c;
+        LOGGER.info("Consumer set successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод установки имени конфига, а также работы с ним
+
+    public RC setConfig(String configFileName) {
+        RC code = config.setConfig(configFileName);
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        poolSize = config.getCredits(); // - одновременно в конвейере находится не больше порций, чем выдано кредитов
+        pool = new ChunkPool(poolSize, chunkSize);
+        LOGGER.info("Receiver config file read successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка соединения с отправителем
+
+    public RC setChannel(SocketChannel channel) {
+        if (channel == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        this.channel = channel;
+        LOGGER.info("Sender channel is set");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка счетчиков модуля
+
+    public RC setMetrics(StageMetrics metrics) {
+        this.metrics = metrics;
+        return RC.CODE_SUCCESS;
+    }
+
+    //Переключение на конвейер буферов: порции принимаются из сокета в буферы вне кучи
+
+    public RC setDirect() {
+        bufferPool = new BufferPool(poolSize, chunkSize);
+        LOGGER.info("Direct buffers are used");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Увеличение пулов на количество порций, удерживаемых последним модулем до их записи
+
+    public RC reserve(int chunks) {
+        if (chunks <= 0)
+            return RC.CODE_SUCCESS;
+        poolSize += chunks;
+        pool = new ChunkPool(poolSize, chunkSize);
+        if (bufferPool != null)
+            bufferPool = new BufferPool(poolSize, chunkSize);
+        LOGGER.info("Pool size is increased to " + poolSize);
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод, возвращающий размер порции; до приема первого кадра он неизвестен
+
+    public int getChunkSize() {
+        return Math.max(chunkSize, 1);
+    }
+
+    //Метод, возвращающий пул буферов для передачи последнему модулю конвейера
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    //Метод, возвращающий пул порций для передачи последнему модулю конвейера
+
+    public ChunkPool getChunkPool() {
+        return pool;
+    }
+
+    //Передача ответа отправителю: кредиты, успешное завершение или код ошибки
+
+    private void answer(int value) throws IOException {
+        reply.clear();
+        reply.putInt(value).flip();
+        Frame.writeFully(channel, reply);
+    }
+
+    //Сообщение отправителю итогового результата конвейера после его остановки
+
+    public void complete(RC code) {
+        try {
+            answer(code == RC.CODE_SUCCESS ? Frame.DONE : Frame.error(code));
+        } catch (IOException e) { // - отправитель мог уже закрыть соединение
+            LOGGER.warning("Couldn't notify sender about result " + code);
+        }
+    }
+
+    //Прием порции из сокета и передача ее потребителю; пулы переходят на размер порции отправителя
+
+    private RC deliver(int length) throws IOException {
+        long start = System.nanoTime();
+        if (bufferConsumer != null) {
+            if (length > chunkSize) {
+                chunkSize = length;
+                bufferPool.resize(length);
+            }
+            ByteBuffer buffer = bufferPool.acquire();
+            buffer.limit(length);
+            Frame.readFully(channel, buffer);
+            buffer.flip();
+            long nanos = System.nanoTime() - start;
+            metrics.io(nanos);
+            metrics.chunk(length, length, nanos);
+            return bufferConsumer.execute(buffer);
+        }
+        if (length != chunkSize) {  // - массив порции должен совпадать с ней по длине
+            chunkSize = length;
+            pool.resize(length);
+        }
+        byte[] chunk = pool.acquire();
+        Frame.readFully(channel, ByteBuffer.wrap(chunk));
+        long nanos = System.nanoTime() - start;
+        metrics.io(nanos);
+        metrics.chunk(length, length, nanos);
+        return consumer.execute(chunk);
+    }
+
+    //Прием кадров до конца данных; итог обработки сообщается отправителю после остановки конвейера
+
+    private RC receive() throws IOException {
+        header.clear().limit(Integer.BYTES);
+        Frame.readFully(channel, header);
+        if (header.getInt(0) != Frame.MAGIC) {
+            LOGGER.severe("Unknown sender");
+            return RC.CODE_FAILED_TO_READ;
+        }
+        answer(config.getCredits());    // - начальные кредиты
+        while (true) {
+            header.clear();
+            Frame.readFully(channel, header);
+            header.flip();
+            byte type = header.get();
+            byte code = header.get();
+            int count = header.getInt();
+            long sequence = header.getLong();
+            int length = header.getInt();
+            if (sequence != expected) {
+                LOGGER.severe("Frame out of sequence: expected portion " + expected + ", got " + sequence);
+                return RC.CODE_FAILED_TO_READ;
+            }
+            if (type == Frame.END)
+                return finish();
+            if (type == Frame.ERROR) {
+                RC remote = Frame.code(code);
+                LOGGER.severe("Sender failed with " + remote);
+                return remote;
+            }
+            if (type == Frame.FLUSH) {  // - отправитель ожидает новых данных, накопленное передается дальше
+                RC result = IFlushable.forward(bufferConsumer != null ? bufferConsumer : consumer);
+                if (result != RC.CODE_SUCCESS)
+                    return result;
+                continue;
+            }
+            if (type != Frame.DATA || count < 1 || count > Frame.MAX_CHUNKS || length < count * Integer.BYTES) {
+                LOGGER.severe("Invalid frame");
+                return RC.CODE_FAILED_TO_READ;
+            }
+            lengths.clear().limit(count * Integer.BYTES);
+            Frame.readFully(channel, lengths);
+            long total = 0;
+            for (int i = 0; i < count; i++) {
+                int size = lengths.getInt(i * Integer.BYTES);
+                if (size < 1) {
+                    LOGGER.severe("Invalid frame");
+                    return RC.CODE_FAILED_TO_READ;
+                }
+                total += size;
+            }
+            if (total != length - count * Integer.BYTES) {
+                LOGGER.severe("Invalid frame");
+                return RC.CODE_FAILED_TO_READ;
+            }
+            for (int i = 0; i < count; i++) {
+                int size = lengths.getInt(i * Integer.BYTES);
+                chunkLog.hit(size);
+                RC result = deliver(size);
+                if (result != RC.CODE_SUCCESS)
+                    return result;
+            }
+            expected += count;
+            answer(count);  // - порции переданы дальше, отправитель может послать столько же новых
+        }
+    }
+
+    //Метод, передающий потребителю признак конца данных и выводящий статистику пула
+
+    private RC finish() {
+        chunkLog.finish();
+        LOGGER.info("Received " + expected + " portions");
+        LOGGER.info(bufferConsumer != null ? bufferPool.stats() : pool.stats());
+        if (bufferConsumer != null)
+            return bufferConsumer.execute(null);
+        return consumer.execute(null);
+    }
+
+    //Метод, принимающий данные от отправителя до конца данных
+
+    public RC execute(byte[] data) {
+        if (bufferPool != null && consumer instanceof IBufferExecutable)
+            bufferConsumer = (IBufferExecutable) consumer;
+        try {
+            return receive();
+        } catch (EOFException e) { // - отправитель закрыл соединение до конца данных
+            LOGGER.severe("Connection closed by sender before end of data");
+            return RC.CODE_FAILED_TO_READ;
+        } catch (IOException e) { // - обработка исключения
+            LOGGER.severe("Couldn't receive data from sender");
+            return RC.CODE_FAILED_TO_READ;
+        }
+    }
+}
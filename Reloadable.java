@@ -0,0 +1,7 @@
+import ru.spbstu.pipeline.RC;
+
+//Интерфейс модуля, способного применить измененный конфиг без остановки конвейера
+
+interface Reloadable {
+    RC reload();
+}
@@ -0,0 +1,109 @@
+import ru.spbstu.pipeline.RC;
+
+import java.util.Map;
+import java.util.logging.Logger;
+
+//Класс конфига удаленной передачи, общего для отправителя и получателя
+
+class RemoteConfig {
+    private static Logger LOGGER;   // - ссылка на логгер
+
+    private final static String[] tokens = {};  // - обязательных токенов нет
+
+    private final static String[] optionalTokens = {"CREDITS", "BATCH_BYTES", "BATCH_COUNT"};  // - необязательные токены конфига
+
+    private enum optionalTokenInd {CREDITS, BATCH_BYTES, BATCH_COUNT}   // - индексы необязательных токенов
+
+    private final static int DEFAULT_CREDITS = 16;  // - количество кредитов получателя по умолчанию
+    private final static int DEFAULT_BATCH_COUNT = 64;  // - наибольшее количество порций в кадре по умолчанию
+
+    private int credits;    // - количество порций, которые получатель принимает без подтверждения
+    private long batchBytes;    // - объем, до которого отправитель собирает мелкие порции в кадр (0 - порция на кадр)
+    private int batchCount; // - наибольшее количество порций в кадре
+
+    //Конструктор
+
+    public RemoteConfig(Logger logger) {
+        LOGGER = logger;
+    }
+
+    //Метод, проверящий и обрабатывающий значения токенов в конфиге
+
+    private RC dataValidation(Map<String, String> map) {
+        String value = map.get(optionalTokens[optionalTokenInd.CREDITS.ordinal()]);
+        credits = DEFAULT_CREDITS;
+        try {   //Преобразовние строки в целое значение
+            if (value != null)
+                credits = Integer.parseInt(value);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            credits = 0;
+        }
+        if (credits < 1) {  // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.CREDITS.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+
+        value = map.get(optionalTokens[optionalTokenInd.BATCH_BYTES.ordinal()]);
+        batchBytes = 0;
+        try {   //Преобразовние строки в целое значение
+            if (value != null)
+                batchBytes = Long.parseLong(value);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            batchBytes = -1;
+        }
+        if (batchBytes < 0 || batchBytes > Frame.MAX_LENGTH) {  // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.BATCH_BYTES.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+
+        value = map.get(optionalTokens[optionalTokenInd.BATCH_COUNT.ordinal()]);
+        batchCount = DEFAULT_BATCH_COUNT;
+        try {   //Преобразовние строки в целое значение
+            if (value != null)
+                batchCount = Integer.parseInt(value);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            batchCount = 0;
+        }
+        if (batchCount < 1 || batchCount > Frame.MAX_CHUNKS) {  // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.BATCH_COUNT.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        LOGGER.info("Remote values are valid");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод чтения и обработки конфига
+
+    public RC setConfig(String configFileName) {
+        if (configFileName == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        BaseSemantics sem = new BaseSemantics(LOGGER, tokens, optionalTokens);  // - создание экземпляра класса семантической обработки
+        sem.setConfig(configFileName);
+        RC code = sem.readConfig(); // - чтение и парсинг конфига
+        if (code == RC.CODE_SUCCESS)
+            code = sem.run();   // - проведение семантического анализа
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        return dataValidation(sem.getMap());
+    }
+
+    //Количество порций, которые получатель принимает без подтверждения
+
+    public int getCredits() {
+        return credits;
+    }
+
+    //Объем, до которого отправитель собирает мелкие порции в один кадр
+
+    public long getBatchBytes() {
+        return batchBytes;
+    }
+
+    //Наибольшее количество порций в кадре
+
+    public int getBatchCount() {
+        return batchCount;
+    }
+}
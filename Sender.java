@@ -0,0 +1,341 @@
+import ru.spbstu.pipeline.IExecutable;
+import ru.spbstu.pipeline.IExecutor;
+import ru.spbstu.pipeline.RC;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.logging.Logger;
+
+//Класс модуля отправки: последний модуль конвейера, передающий порции по сокету получателю в другой JVM.
+//Порции отправляются кадрами, пока у отправителя есть кредиты получателя; мелкие порции собираются в один кадр
+
+public class Sender implements IExecutor, IBufferExecutable, IFlushable, ChunkSink {
+    private static Logger LOGGER;   // - ссылка на логгер
+
+    private IExecutable producer;   // - ссылка на производителя
+    private IExecutable consumer;   // - ссылка на потребителя
+
+    private RemoteConfig config;    // - конфиг удаленной передачи
+    private SocketChannel channel;  // - соединение с получателем
+    private ByteBuffer header;  // - заголовок кадра вместе с длинами порций
+    private final ByteBuffer reply = ByteBuffer.allocate(Integer.BYTES);  // - ответ получателя
+    private ByteBuffer[] frame; // - заголовок и порции кадра для записи со сбором
+    private Runnable[] releases;    // - действия по возврату порций после отправки
+    private int count;  // - количество порций в собираемом кадре
+    private long bytes; // - объем порций в собираемом кадре
+    private long sequence;  // - номер первой порции собираемого кадра
+    private int credits;    // - количество порций, которые можно отправить без ожидания получателя
+    private boolean started;    // - сигнатура соединения отправлена
+    private boolean ended;  // - конец данных или ошибка отправлены
+    private long creditWaits;   // - количество ожиданий кредитов
+    private long creditWaitNanos;   // - суммарное время ожидания кредитов
+    private ChunkPool pool; // - пул, в который возвращаются отправленные порции
+    private BufferPool bufferPool;  // - пул, в который возвращаются отправленные буферы
+    private StageMetrics metrics = new StageMetrics(Sender.class.getSimpleName()); // - счетчики модуля
+    private ChunkLog chunkLog;  // - сводка отправленных порций для лога
+
+    //Конструктор
+
+    public Sender(Logger logger) {
+        LOGGER = logger;
+        config = new RemoteConfig(logger);
+        chunkLog = new ChunkLog(logger, Sender.class, "Sending data to receiver");
+    }
+
+    //Установка производителя
+
+    public RC setProducer(IExecutable p) {
+        if (p == null || !(p instanceof Reader || p instanceof Receiver || p instanceof Executor || p instanceof Compressor)) {
+            LOGGER.severe("Wrong producer");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        producer = p;
+        LOGGER.info("Producer set successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка потребителя
+
+    public RC setConsumer(IExecutable c) {
+        if (c != null) {
+            LOGGER.severe("Wrong consumer");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        consumer = c;
+        LOGGER.info("Consumer set successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод установки имени конфига, а также работы с ним
+
+    public RC setConfig(String configFileName) {
+        RC code = config.setConfig(configFileName);
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        header = ByteBuffer.allocateDirect(Frame.HEADER_SIZE + config.getBatchCount() * Integer.BYTES);
+        frame = new ByteBuffer[config.getBatchCount() + 1];
+        releases = new Runnable[config.getBatchCount()];
+        LOGGER.info("Sender config file read successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка соединения с получателем
+
+    public RC setChannel(SocketChannel channel) {
+        if (channel == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        this.channel = channel;
+        LOGGER.info("Receiver channel is set");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка пула, в который возвращаются порции после отправки
+
+    public RC setChunkPool(ChunkPool pool) {
+        this.pool = pool;
+        LOGGER.info("Chunk pool is set");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка пула, в который возвращаются буферы после отправки
+
+    public RC setBufferPool(BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+        LOGGER.info("Buffer pool is set");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Количество порций заданного размера, которые модуль может удерживать в собираемом кадре
+
+    public int getRetained(int chunkSize) {
+        if (config.getBatchBytes() == 0)    // - каждая порция отправляется сразу
+            return 0;
+        return (int) Math.min(config.getBatchCount(), config.getBatchBytes() / chunkSize + 1);
+    }
+
+    //Установка счетчиков модуля
+
+    public RC setMetrics(StageMetrics metrics) {
+        this.metrics = metrics;
+        return RC.CODE_SUCCESS;
+    }
+
+    //Освобождение ресурсов модуля после остановки конвейера
+
+    public RC close() {
+        for (int i = 0; i < count; i++) // - порции неотправленного кадра возвращаются владельцам
+            releases[i].run();
+        count = 0;
+        bytes = 0;
+        return RC.CODE_SUCCESS;
+    }
+
+    //Сообщение получателю об ошибке конвейера, чтобы он не ждал оставшихся данных
+
+    public void fail(RC code) {
+        if (ended || channel == null)
+            return;
+        ended = true;
+        try {
+            handshake();
+            Frame.writeFully(channel, Frame.header(header, Frame.ERROR, code, 0, sequence, 0).flip());
+            LOGGER.info("Receiver is notified about error " + code);
+        } catch (IOException e) { // - получатель мог уже закрыть соединение
+            LOGGER.warning("Couldn't notify receiver about error " + code);
+        }
+    }
+
+    //Отправка сигнатуры соединения перед первым кадром
+
+    private void handshake() throws IOException {
+        if (started)
+            return;
+        reply.clear();
+        reply.putInt(Frame.MAGIC).flip();
+        Frame.writeFully(channel, reply);
+        started = true;
+    }
+
+    //Чтение очередного ответа получателя
+
+    private int readReply() throws IOException {
+        reply.clear();
+        Frame.readFully(channel, reply);
+        reply.flip();
+        return reply.getInt();
+    }
+
+    //Ожидание кредитов получателя; ответ об окончании или ошибке до конца данных прерывает отправку
+
+    private RC awaitCredits() {
+        long start = System.nanoTime();
+        try {
+            handshake();    // - получатель выдает первые кредиты после сигнатуры
+            while (credits == 0) {
+                int value = readReply();
+                if (value > 0)
+                    credits += value;
+                else if (value == Frame.DONE) {
+                    LOGGER.severe("Receiver finished before end of data");
+                    return RC.CODE_FAILED_TO_WRITE;
+                } else {
+                    ended = true;   // - получатель уже остановился
+                    RC code = Frame.code(-value - 1);
+                    LOGGER.severe("Receiver failed with " + code);
+                    return code;
+                }
+            }
+        } catch (IOException e) { // - обработка исключения
+            LOGGER.severe("Connection to receiver is lost");
+            return RC.CODE_FAILED_TO_WRITE;
+        }
+        long nanos = System.nanoTime() - start;
+        creditWaits++;
+        creditWaitNanos += nanos;
+        metrics.io(nanos);
+        return RC.CODE_SUCCESS;
+    }
+
+    //Отправка собранного кадра одним вызовом записи со сбором; порции возвращаются владельцам и при ошибке
+
+    private RC flush() {
+        if (count == 0)
+            return RC.CODE_SUCCESS;
+        RC code = RC.CODE_SUCCESS;
+        Frame.header(header, Frame.DATA, RC.CODE_SUCCESS, count, sequence, (int) (count * Integer.BYTES + bytes));
+        for (int i = 0; i < count; i++)
+            header.putInt(frame[i + 1].remaining());
+        header.flip();
+        frame[0] = header;
+        long start = System.nanoTime();
+        long calls = 0;
+        int first = 0;  // - первый не отправленный полностью буфер
+        int total = count + 1;
+        try {
+            handshake();
+            while (first < total) {
+                channel.write(frame, first, total - first);
+                calls++;
+                while (first < total && !frame[first].hasRemaining())
+                    first++;
+            }
+            metrics.written(bytes, System.nanoTime() - start);
+            metrics.syscalls(calls, Math.max(count - calls, 0));   // - без сбора каждая порция отправлялась бы отдельно
+        } catch (IOException e) { // - обработка исключения
+            LOGGER.severe("Couldn't send data to receiver");
+            code = RC.CODE_FAILED_TO_WRITE;
+        }
+        for (int i = 0; i < count; i++) {
+            releases[i].run();
+            frame[i + 1] = null;
+            releases[i] = null;
+        }
+        sequence += count;
+        count = 0;
+        bytes = 0;
+        return code;
+    }
+
+    //Добавление порции в кадр; кадр отправляется при достижении ограничений или нехватке кредитов
+
+    private RC send(ByteBuffer data, Runnable release) {
+        RC code;
+        int length = data.remaining();
+        chunkLog.hit(length);
+        long start = System.nanoTime();
+        if (count > 0 && (credits == 0 || bytes + length > Frame.MAX_LENGTH)) {
+            code = flush();
+            if (code != RC.CODE_SUCCESS) {
+                release.run();
+                return code;
+            }
+        }
+        if (credits == 0) {
+            code = awaitCredits();
+            if (code != RC.CODE_SUCCESS) {
+                release.run();
+                return code;
+            }
+        }
+        credits--;
+        frame[count + 1] = data;
+        releases[count] = release;
+        count++;
+        bytes += length;
+        code = RC.CODE_SUCCESS;
+        if (count == releases.length || bytes >= config.getBatchBytes())
+            code = flush();
+        metrics.chunk(length, 0, System.nanoTime() - start);
+        return code;
+    }
+
+    //Отправка собранного кадра и кадра сброса: получатель передает сигнал о сбросе своему конвейеру
+
+    public RC flushPending() {
+        RC code = flush();
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        try {
+            handshake();
+            Frame.writeFully(channel, Frame.header(header, Frame.FLUSH, RC.CODE_SUCCESS, 0, sequence, 0).flip());
+        } catch (IOException e) { // - обработка исключения
+            LOGGER.severe("Connection to receiver is lost");
+            return RC.CODE_FAILED_TO_WRITE;
+        }
+        return RC.CODE_SUCCESS;
+    }
+
+    //Отправка оставшихся порций и конца данных с ожиданием итогового ответа получателя
+
+    private RC finish() {
+        chunkLog.finish();
+        RC code = flush();
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        try {
+            handshake();    // - при пустых данных кадров порций не было
+            Frame.writeFully(channel, Frame.header(header, Frame.END, RC.CODE_SUCCESS, 0, sequence, 0).flip());
+            ended = true;
+            int value;
+            do {
+                value = readReply();    // - оставшиеся кредиты пропускаются
+            } while (value > 0);
+            code = value == Frame.DONE ? RC.CODE_SUCCESS : Frame.code(-value - 1);
+        } catch (IOException e) { // - обработка исключения
+            LOGGER.severe("Connection to receiver is lost");
+            return RC.CODE_FAILED_TO_WRITE;
+        }
+        LOGGER.info("Credits were awaited " + creditWaits + " times, " + creditWaitNanos / 1_000_000 + " ms in total");
+        if (code != RC.CODE_SUCCESS) {
+            LOGGER.severe("Receiver failed with " + code);
+            return code;
+        }
+        LOGGER.info("Receiver confirmed " + sequence + " portions");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод, отправляющий порцию получателю
+
+    public RC execute(byte[] data) {
+        if (data == null)   // - обработка случая достижения конца файла
+            return finish();
+        return send(ByteBuffer.wrap(data), () -> {
+            if (pool != null)
+                pool.release(data);
+        });
+    }
+
+    //Метод, отправляющий буфер получателю без копирования
+
+    public RC execute(ByteBuffer data) {
+        if (data == null)   // - обработка случая достижения конца файла
+            return finish();
+        return send(data, () -> {
+            if (bufferPool != null)
+                bufferPool.release(data);
+        });
+    }
+}
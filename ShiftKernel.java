@@ -0,0 +1,135 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+//Класс ядра побайтового преобразования, заданного таблицей на 256 значений;
+//циклический сдвиг обрабатывается по 8 байт за шаг в одном значении long
+//(jdk.incubator.vector не используется: его нет в платформе Java 11, под которую собирается проект)
+
+class ShiftKernel {
+    private final static int BYTE_SIZE = 8; // - размер байта в битах
+    private final static int WORD_SIZE = Long.BYTES;    // - количество байтов, обрабатываемых за шаг
+    private final static long ONES = 0x0101010101010101L;   // - единица в каждом байте слова
+
+    //Представление массива байтов в виде массива long (порядок байтов не важен, сдвиг побайтовый)
+
+    private final static VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final static int TABLE_SIZE = 256;  // - количество значений байта
+
+    private final byte[] table; // - таблица преобразования байта
+    private final int rotation; // - величина циклического сдвига влево в пределах байта, либо -1 для произвольной таблицы
+    private final long highMask;    // - маска битов, остающихся в байте после сдвига влево
+    private final long lowMask; // - маска битов, переносимых в младшие разряды байта
+
+    //Конструктор, вычисляющий маски для сдвига влево на заданную величину
+
+    public ShiftKernel(int leftAmount) {
+        this(rotationTable(leftAmount), true);
+    }
+
+    //Конструктор по таблице преобразования; сдвиг по словам используется, если таблица задает циклический сдвиг
+
+    public ShiftKernel(byte[] table, boolean wordwise) {
+        this.table = table;
+        rotation = wordwise ? findRotation(table) : -1;
+        int y = Math.max(rotation, 0);
+        highMask = ONES * ((0xFF << y) & 0xFF);
+        lowMask = ONES * ((1 << y) - 1);
+    }
+
+    //Построение таблицы циклического сдвига влево
+
+    public static byte[] rotationTable(int leftAmount) {
+        int y = ((leftAmount % BYTE_SIZE) + BYTE_SIZE) % BYTE_SIZE;
+        byte[] table = new byte[TABLE_SIZE];
+        for (int x = 0; x < TABLE_SIZE; x++)
+            table[x] = (byte) ((x << y) | (x >> (BYTE_SIZE - y)));
+        return table;
+    }
+
+    //Композиция таблиц: сначала первое преобразование, затем второе
+
+    public static byte[] compose(byte[] first, byte[] second) {
+        byte[] table = new byte[TABLE_SIZE];
+        for (int x = 0; x < TABLE_SIZE; x++)
+            table[x] = second[first[x] & 0xFF];
+        return table;
+    }
+
+    //Поиск величины циклического сдвига, совпадающего с таблицей
+
+    private static int findRotation(byte[] table) {
+        for (int y = 0; y < BYTE_SIZE; y++) {
+            if (Arrays.equals(table, rotationTable(y)))
+                return y;
+        }
+        return -1;
+    }
+
+    //Метод, возвращающий таблицу преобразования
+
+    public byte[] table() {
+        return table;
+    }
+
+    //Проверка, является ли преобразование тождественным
+
+    public boolean isIdentity() {
+        return rotation == 0 || Arrays.equals(table, rotationTable(0));
+    }
+
+    //Циклический сдвиг каждого байта слова
+
+    private long rotate(long x) {
+        return ((x << rotation) & highMask) | ((x >>> (BYTE_SIZE - rotation)) & lowMask);
+    }
+
+    //Циклический сдвиг одного байта
+
+    private byte rotate(byte data) {
+        int x = data & 0xFF;
+        return (byte) ((x << rotation) | (x >> (BYTE_SIZE - rotation)));
+    }
+
+    //Метод, выполняющий преобразование массива на месте
+
+    public void apply(byte[] data, int from, int to) {
+        if (rotation < 0) { // - произвольное преобразование выполняется по таблице
+            for (int i = from; i < to; i++)
+                data[i] = table[data[i] & 0xFF];
+            return;
+        }
+        if (rotation == 0)  // - сдвиг на кратную байту величину ничего не меняет
+            return;
+        int i = from;
+        for (; i + WORD_SIZE <= to; i += WORD_SIZE)   // - обработка по 8 байт
+            LONG_VIEW.set(data, i, rotate((long) LONG_VIEW.get(data, i)));
+        for (; i < to; i++) // - обработка оставшихся байтов
+            data[i] = rotate(data[i]);
+    }
+
+    //Метод, выполняющий преобразование диапазона буфера на месте (абсолютная адресация, позиция буфера не меняется)
+
+    public void apply(ByteBuffer data, int from, int to) {
+        if (rotation < 0) { // - произвольное преобразование выполняется по таблице
+            for (int i = from; i < to; i++)
+                data.put(i, table[data.get(i) & 0xFF]);
+            return;
+        }
+        if (rotation == 0)  // - сдвиг на кратную байту величину ничего не меняет
+            return;
+        ByteBuffer range = data.duplicate();
+        range.limit(to).position(from);
+        LongBuffer words = range.slice().order(ByteOrder.nativeOrder()).asLongBuffer();    // - представление диапазона в виде long
+        int count = words.limit();
+        for (int j = 0; j < count; j++)   // - обработка по 8 байт
+            words.put(j, rotate(words.get(j)));
+        int i = from + count * WORD_SIZE;
+        for (; i < to; i++) // - обработка оставшихся байтов
+            data.put(i, rotate(data.get(i)));
+    }
+}
@@ -0,0 +1,192 @@
+import ru.spbstu.pipeline.IExecutable;
+import ru.spbstu.pipeline.RC;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//Класс канала между модулями конвейера: ограниченный кольцевой буфер с одним производителем и одним потребителем,
+//модуль-потребитель которого выполняется в отдельном потоке; порции передаются массивами или буферами
+
+class StageChannel implements IExecutable, IBufferExecutable, IFlushable {
+    private static Logger LOGGER;   // - ссылка на логгер
+
+    private final static byte[] END = new byte[0];  // - маркер конца данных в кольцевом буфере
+    private final static ByteBuffer BUFFER_END = ByteBuffer.allocate(0);    // - маркер конца данных конвейера буферов
+    private final static Object FLUSH = new Object();   // - маркер сброса накопленных данных
+    private final static long PARK_NANOS = 1_000_000L;  // - наибольшее время ожидания потока без пробуждения
+
+    private final IExecutable stage;    // - модуль-потребитель канала
+    private final IBufferExecutable bufferStage;    // - модуль-потребитель канала в конвейере буферов
+    private final Object[] ring;    // - заранее выделенный кольцевой буфер порций
+    private final int mask; // - маска индекса кольцевого буфера
+
+    private volatile long head; // - номер следующей порции для потребителя (изменяется только потребителем)
+    private volatile long tail; // - номер следующей свободной ячейки (изменяется только производителем)
+
+    private volatile boolean producerWaiting;   // - производитель ожидает освобождения места
+    private volatile boolean consumerWaiting;   // - потребитель ожидает поступления данных
+    private volatile boolean aborted;   // - признак аварийной остановки канала
+    private volatile RC result = RC.CODE_SUCCESS;   // - код возврата модуля-потребителя
+
+    private long waits; // - количество ожиданий потребителем очередной порции
+    private long waitNanos; // - общее время ожидания потребителя
+
+    private volatile Thread producer;   // - поток производителя
+    private final Thread consumer;  // - поток потребителя
+
+    //Конструктор, округляющий емкость кольцевого буфера до степени двойки
+
+    public StageChannel(Logger logger, IExecutable stage, int capacity) {
+        LOGGER = logger;
+        this.stage = stage;
+        bufferStage = stage instanceof IBufferExecutable ? (IBufferExecutable) stage : new BufferAdapter(stage, null);
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        ring = new Object[size];
+        mask = size - 1;
+        consumer = new Thread(this::drain, "pipeline-" + stage.getClass().getSimpleName());
+    }
+
+    //Запуск потока модуля-потребителя
+
+    public void start() {
+        consumer.start();
+    }
+
+    //Передача порции в канал
+
+    public RC execute(byte[] data) {
+        return offer(data == null ? END : data);
+    }
+
+    //Передача буфера в канал
+
+    public RC execute(ByteBuffer data) {
+        return offer(data == null ? BUFFER_END : data);
+    }
+
+    //Передача в канал сигнала о сбросе накопленных данных: модуль получит его после порций, переданных раньше
+
+    public RC flushPending() {
+        return offer(FLUSH);
+    }
+
+    //Код возврата для производителя: ошибка потребителя, либо ошибка при аварийной остановке канала
+
+    private RC status() {
+        RC code = result;
+        if (code == RC.CODE_SUCCESS && aborted)
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        return code;
+    }
+
+    //Помещение порции в кольцевой буфер; при заполненном буфере производитель ожидает потребителя
+
+    private RC offer(Object data) {
+        producer = Thread.currentThread();
+        RC code = status();
+        while (code == RC.CODE_SUCCESS && tail - head == ring.length) {    // - обратное давление при заполненном буфере
+            producerWaiting = true;
+            if (tail - head == ring.length)
+                LockSupport.parkNanos(this, PARK_NANOS);
+            producerWaiting = false;
+            code = status();
+        }
+        if (code != RC.CODE_SUCCESS)  // - ошибка потребителя или остановка канала возвращается производителю
+            return code;
+        ring[(int) (tail & mask)] = data;
+        tail = tail + 1;    // - публикация порции потребителю
+        if (consumerWaiting)
+            LockSupport.unpark(consumer);
+        return RC.CODE_SUCCESS;
+    }
+
+    //Поток потребителя: при остановке до конца данных, в том числе из-за исключения модуля,
+    //канал получает код ошибки, а ожидающий производитель пробуждается
+
+    private void drain() {
+        boolean ended = false;  // - модуль обработал конец данных
+        try {
+            ended = transfer();
+        } catch (RuntimeException e) {  // - исключение модуля не должно оставлять производителя в ожидании
+            LOGGER.log(Level.SEVERE, "Stage " + stage.getClass().getSimpleName() + " failed", e);
+        } finally {
+            if (!ended && result == RC.CODE_SUCCESS)
+                result = RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+            Thread waiting = producer;
+            if (waiting != null)
+                LockSupport.unpark(waiting);
+        }
+    }
+
+    //Цикл потребителя: извлечение порций и запуск модуля до получения конца данных, ошибки или остановки канала
+
+    private boolean transfer() {
+        long waitStart = 0; // - момент начала текущего ожидания
+        while (!aborted) {
+            if (head == tail) { // - ожидание данных
+                if (waitStart == 0)
+                    waitStart = System.nanoTime();
+                consumerWaiting = true;
+                if (head == tail && !aborted)
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                consumerWaiting = false;
+                continue;
+            }
+            if (waitStart != 0) {   // - учет завершившегося ожидания
+                waits++;
+                waitNanos += System.nanoTime() - waitStart;
+                waitStart = 0;
+            }
+            int index = (int) (head & mask);
+            Object data = ring[index];
+            ring[index] = null;
+            head = head + 1;    // - освобождение ячейки для производителя
+            if (producerWaiting)
+                LockSupport.unpark(producer);
+            RC code;
+            if (data == FLUSH)
+                code = IFlushable.forward(stage);
+            else if (data instanceof ByteBuffer)
+                code = bufferStage.execute(data == BUFFER_END ? null : (ByteBuffer) data);
+            else
+                code = stage.execute(data == END ? null : (byte[]) data);
+            if (code != RC.CODE_SUCCESS) {
+                result = code;
+                return false;
+            }
+            if (data == END || data == BUFFER_END)
+                return true;
+        }
+        return false;
+    }
+
+    //Аварийная остановка канала без обработки оставшихся порций
+
+    public void abort() {
+        aborted = true;
+        LockSupport.unpark(consumer);
+        if (producer != null)
+            LockSupport.unpark(producer);
+    }
+
+    //Количество ожиданий потребителем очередной порции (после завершения потока потребителя)
+
+    public long getWaits() {
+        return waits;
+    }
+
+    //Общее время ожидания потребителя в наносекундах (после завершения потока потребителя)
+
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    //Ожидание завершения потока потребителя и получение его кода возврата
+
+    public RC join() throws InterruptedException {
+        consumer.join();
+        return result;
+    }
+}
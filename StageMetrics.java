@@ -0,0 +1,119 @@
+import java.util.concurrent.atomic.LongAdder;
+
+//Класс счетчиков одного модуля конвейера; суммирование через LongAdder остается дешевым при работе в нескольких потоках
+
+class StageMetrics {
+    private final static int BUCKETS = Long.SIZE;  // - количество интервалов гистограммы (степени двойки наносекунд)
+
+    private final String name;  // - имя модуля
+    private final LongAdder bytesIn = new LongAdder();  // - принятые байты
+    private final LongAdder bytesOut = new LongAdder(); // - переданные байты
+    private final LongAdder chunks = new LongAdder();   // - обработанные порции
+    private final LongAdder workNanos = new LongAdder();    // - время работы модуля
+    private final LongAdder ioNanos = new LongAdder();  // - время ожидания ввода-вывода
+    private final LongAdder syscalls = new LongAdder(); // - количество вызовов записи со сбором
+    private final LongAdder syscallsSaved = new LongAdder();    // - количество вызовов, сэкономленных сбором
+    private final LongAdder stalls = new LongAdder();   // - количество ожиданий следующего модуля
+    private final LongAdder stallNanos = new LongAdder();   // - время ожидания следующего модуля
+    private final LongAdder[] latency = new LongAdder[BUCKETS]; // - гистограмма времени обработки порции
+
+    //Конструктор
+
+    public StageMetrics(String name) {
+        this.name = name;
+        for (int i = 0; i < BUCKETS; i++)
+            latency[i] = new LongAdder();
+    }
+
+    //Учет обработанной порции и времени ее обработки
+
+    public void chunk(long in, long out, long nanos) {
+        bytesIn.add(in);
+        bytesOut.add(out);
+        chunks.increment();
+        workNanos.add(nanos);
+        latency[BUCKETS - 1 - Long.numberOfLeadingZeros(Math.max(nanos, 1))].increment();
+    }
+
+    //Учет времени ожидания ввода-вывода
+
+    public void io(long nanos) {
+        ioNanos.add(nanos);
+    }
+
+    //Учет записанных в поток байтов и времени ожидания записи
+
+    public void written(long bytes, long nanos) {
+        bytesOut.add(bytes);
+        ioNanos.add(nanos);
+    }
+
+    //Учет вызовов записи со сбором и сэкономленных ими вызовов
+
+    public void syscalls(long calls, long saved) {
+        syscalls.add(calls);
+        syscallsSaved.add(saved);
+    }
+
+    //Учет ожиданий следующим модулем данных от этого модуля
+
+    public void stalled(long count, long nanos) {
+        stalls.add(count);
+        stallNanos.add(nanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    public long getChunks() {
+        return chunks.sum();
+    }
+
+    public long getWorkNanos() {
+        return workNanos.sum();
+    }
+
+    public long getIoNanos() {
+        return ioNanos.sum();
+    }
+
+    public long getSyscalls() {
+        return syscalls.sum();
+    }
+
+    public long getSyscallsSaved() {
+        return syscallsSaved.sum();
+    }
+
+    public long getStalls() {
+        return stalls.sum();
+    }
+
+    public long getStallNanos() {
+        return stallNanos.sum();
+    }
+
+    //Оценка квантиля времени обработки порции по гистограмме (верхняя граница интервала)
+
+    public long percentile(double p) {
+        long total = 0;
+        for (LongAdder bucket : latency)
+            total += bucket.sum();
+        long rank = (long) Math.ceil(total * p), seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += latency[i].sum();
+            if (seen >= rank && seen > 0)
+                return i + 1 < BUCKETS ? (1L << (i + 1)) - 1 : Long.MAX_VALUE;
+        }
+        return 0;
+    }
+}
@@ -1,196 +1,989 @@
-import ru.spbstu.pipeline.IExecutable;
-import ru.spbstu.pipeline.IWriter;
-import ru.spbstu.pipeline.RC;
-
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.util.Map;
-import java.util.logging.Logger;
-
-//Класс буфера для записи
-
-class Buffer {
-    private byte[] buffer;  // - буфер
-    private int filled; // - количество занятых ячеек
-    FileOutputStream fos;   // - поток для записи
-
-    //Метод установки потока для записи
-
-    public RC setOutputStream(FileOutputStream fos) {
-        this.fos = fos;
-        return RC.CODE_SUCCESS;
-    }
-
-    //Метод установки буфера определенного размера
-
-    public RC setBuffer(int size) {
-        buffer = new byte[size];
-        return RC.CODE_SUCCESS;
-    }
-
-    //Провера на заполненность
-
-    public boolean isFull() {
-        return filled == buffer.length;
-    }
-
-    //Добавление в буффер еще одного значения
-
-    public boolean add(byte val) {
-        if (!isFull()) { // - проверка на заполненность
-            buffer[filled] = val;   // - добавление при наличии свободных ячеек
-            filled++;   // - увеличения счетчика занятых ячеек
-        } else
-            return false;   // - возврат при неуспешном добавлении
-        return true;    // - возврат при успешном добавлении
-    }
-
-    //Запись буффера в файл
-
-    public RC write() {
-        try {
-            fos.write(buffer, 0, filled);   // - запись
-            filled = 0;   // - обнуление счетчика занятых ячеек
-        } catch (IOException e) { // - обработка исключения
-            return RC.CODE_FAILED_TO_WRITE;
-        }
-        return RC.CODE_SUCCESS;
-    }
-}
-
-//Класс модуля записи данных в файл
-
-public class Writer implements IWriter {
-    private static Logger LOGGER;   // - ссылка на логгер
-
-    private final static String[] tokens = {"SIZE_TO_WRITE"};   // - токен конфига модуля записи
-
-    private enum tokenInd {SIZE_TO_WRITE}   // - индекс токена
-
-    private IExecutable producer;   // - ссылка на производителя
-    private IExecutable consumer;   // - ссылка на потребителя
-
-    private FileOutputStream fos;   // - поток записи
-
-    private String configFileName;  // - имя файла конфига
-    private Map<String, String> map;    // - словарь с содержимым конфига
-
-    private int sizeToWrite;    // - размер буфера для записи
-    private Buffer buffer;  // - буфер для записи
-
-    //Конструктор
-
-    public Writer(Logger logger) {
-        LOGGER = logger;
-    }
-
-    //Установка производителя
-
-    public RC setProducer(IExecutable p) {
-        if (p == null || !(p instanceof Executor)) {
-            LOGGER.severe("Wrong producer");
-            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
-        }
-        producer = p;
-        LOGGER.info("Producer set successfully");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Установка потребителя
-
-    public RC setConsumer(IExecutable c) {
-        if (c != null) {
-            LOGGER.severe("Wrong consumer");
-            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
-        }
-        consumer = c;
-        LOGGER.info("Consumer set successfully");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Установка потока записи
-
-    public RC setOutputStream(FileOutputStream fos) {
-        RC code;
-        this.fos = fos;
-        code = buffer.setOutputStream(fos);
-        LOGGER.info("Output stream is set");
-        return code;
-    }
-
-    //Метод, проверящий и обрабатывающий значения токенов в конфиге
-
-    public RC dataValidation() {
-        try {   //Преобразовние строки в целое значение
-            sizeToWrite = Integer.parseInt((map.get(tokens[tokenInd.SIZE_TO_WRITE.ordinal()])));
-        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
-            LOGGER.severe("Invalid " + tokens[tokenInd.SIZE_TO_WRITE.ordinal()] + " value");
-            return RC.CODE_CONFIG_SEMANTIC_ERROR;
-        }
-        if (sizeToWrite < 1) {  // - проверка допустимого диапазона значений
-            LOGGER.severe("Invalid " + tokens[tokenInd.SIZE_TO_WRITE.ordinal()] + " value");
-            return RC.CODE_CONFIG_SEMANTIC_ERROR;
-        }
-        LOGGER.info(tokens[tokenInd.SIZE_TO_WRITE.ordinal()] + " value is valid");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Метод чтения и обработки конфига модуля записи, а также создания буфера
-
-    private RC readConfig() {
-        BaseSemantics sem = new BaseSemantics(LOGGER, tokens);  // - создание экземпляра класса семантической обработки
-        sem.setConfig(configFileName);  // - установка конфига менеджера
-        RC code = sem.readConfig(); // - чтение и парсинг конфига
-        if (code != RC.CODE_SUCCESS)
-            return code;
-        code = sem.run();   // - проведение семантического анализа
-        if (code != RC.CODE_SUCCESS)
-            return code;
-        map = sem.getMap(); // - получение обработанного содержимого конфига
-        code = dataValidation();    // - обработка содержимого конфига
-        if (code != RC.CODE_SUCCESS)
-            return code;
-        buffer = new Buffer();    // - создание экземпляра буфера
-        code = buffer.setBuffer(sizeToWrite); // - создание буфера определенного размера
-        if (code != RC.CODE_SUCCESS)
-            return code;
-        LOGGER.info("Writer config file read successfully");
-        return RC.CODE_SUCCESS;
-    }
-
-    //Метод установки имени конфига, работы с ним и с буфером
-
-    public RC setConfig(String configFileName) {
-        if (configFileName == null) {
-            LOGGER.severe("Null pointer");
-            return RC.CODE_INVALID_ARGUMENT;
-        }
-        this.configFileName = configFileName;
-        LOGGER.info("Config file name is set");
-        return readConfig();
-    }
-
-    //Метод, выполняющий заполнение буфера и своевременную запись его содержимого в файл
-
-    public RC execute(byte[] data) {
-        RC code = RC.CODE_SUCCESS;
-        if (data == null) {    // - обработка случая достижения конца файла
-            LOGGER.info("Writing the remaining data");
-            return buffer.write();  // - запись оставшихся данных в файл
-        }
-        LOGGER.info("Saving data into buffer");
-        for (int i = 0; i < data.length; i++) {
-            if (!buffer.add(data[i])) {  // - попытка добавления байта в буфер
-                code = buffer.write();    // - при невозможности запись содержимого буфера в файл
-                if (code != RC.CODE_SUCCESS) {
-                    LOGGER.severe("Couldn't write data to output file");
-                    return code;
-                }
-                LOGGER.info("Writing data from the buffer");
-                LOGGER.info("Saving data into buffer");
-                buffer.add(data[i]);    // - добавление байта в пустой буфер
-            }
-        }
-        return RC.CODE_SUCCESS;
-    }
-}
+import ru.spbstu.pipeline.IExecutable;
+import ru.spbstu.pipeline.IWriter;
+import ru.spbstu.pipeline.RC;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+//Класс буфера для записи
+
+class Buffer {
+    protected byte[] buffer;    // - буфер
+    protected int filled;   // - количество занятых ячеек
+    OutputStream out;   // - поток для записи
+    GatheringByteChannel channel;   // - канал записи того же приемника
+    protected StageMetrics metrics = new StageMetrics(Writer.class.getSimpleName());   // - счетчики модуля записи
+    protected ChunkPool pool;   // - пул, в который возвращаются порции, больше не нужные буферу
+
+    //Метод установки потока для записи
+
+    public RC setOutputStream(FileOutputStream fos) {
+        out = fos;
+        channel = fos.getChannel();
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод установки канала для записи (сокета), для которого нет файлового потока
+
+    public RC setOutputChannel(GatheringByteChannel channel) {
+        this.channel = channel;
+        out = Channels.newOutputStream(channel);
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка счетчиков модуля записи
+
+    public RC setMetrics(StageMetrics metrics) {
+        this.metrics = metrics;
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка пула, в который возвращаются порции после записи
+
+    public RC setChunkPool(ChunkPool pool) {
+        this.pool = pool;
+        return RC.CODE_SUCCESS;
+    }
+
+    //Возврат порции в пул
+
+    protected void release(byte[] data) {
+        if (pool != null)
+            pool.release(data);
+    }
+
+    //Метод установки буфера определенного размера
+
+    public RC setBuffer(int size) {
+        buffer = new byte[size];
+        return RC.CODE_SUCCESS;
+    }
+
+    //Провера на заполненность
+
+    public boolean isFull() {
+        return filled == buffer.length;
+    }
+
+    //Добавление в буфер порции данных копированием диапазонов, с записью заполненного буфера в файл;
+    //после этого порция возвращается в пул
+
+    public RC add(byte[] data) {
+        RC code = RC.CODE_SUCCESS;
+        int offset = 0;
+        while (offset < data.length) {
+            int remaining = data.length - offset;
+            if (filled == 0 && remaining >= buffer.length) // - крупная порция записывается напрямую, минуя буфер
+                return writeThrough(data, offset, remaining);
+            int count = Math.min(buffer.length - filled, remaining);
+            System.arraycopy(data, offset, buffer, filled, count);  // - копирование диапазона в буфер
+            filled += count;
+            offset += count;
+            if (isFull()) { // - запись заполненного буфера
+                code = write();
+                if (code != RC.CODE_SUCCESS)
+                    return code;
+            }
+        }
+        release(data);
+        return code;
+    }
+
+    //Запись диапазона данных в файл без промежуточного буфера с возвратом порции в пул
+
+    protected RC writeThrough(byte[] data, int offset, int length) {
+        long start = System.nanoTime();
+        try {
+            out.write(data, offset, length);
+            metrics.written(length, System.nanoTime() - start);
+        } catch (IOException e) { // - обработка исключения
+            return RC.CODE_FAILED_TO_WRITE;
+        }
+        release(data);
+        return RC.CODE_SUCCESS;
+    }
+
+    //Запись буффера в файл
+
+    public RC write() {
+        long start = System.nanoTime();
+        try {
+            out.write(buffer, 0, filled);   // - запись
+            metrics.written(filled, System.nanoTime() - start);
+            filled = 0;   // - обнуление счетчика занятых ячеек
+        } catch (IOException e) { // - обработка исключения
+            return RC.CODE_FAILED_TO_WRITE;
+        }
+        return RC.CODE_SUCCESS;
+    }
+
+    //Запись накопленных данных без окончания записи
+
+    public RC flushPending() {
+        return write();
+    }
+
+    //Запись оставшихся данных при достижении конца данных
+
+    public RC finish() {
+        return write();
+    }
+
+    //Освобождение ресурсов буфера
+
+    public void close() {
+    }
+}
+
+//Класс пакета буферов, передаваемых в канал одним вызовом записи со сбором; буферы возвращаются
+//их владельцам после записи
+
+class WriteBatch {
+    private final GatheringByteChannel channel; // - канал записи
+    private final long maxBytes;    // - наибольший объем пакета
+    private final ByteBuffer[] buffers; // - буферы пакета
+    private final Runnable[] releases;  // - действия по возврату буферов после записи
+    private int count;  // - количество буферов в пакете
+    private long bytes; // - объем пакета
+
+    //Конструктор
+
+    WriteBatch(GatheringByteChannel channel, long maxBytes, int maxCount) {
+        this.channel = channel;
+        this.maxBytes = maxBytes;
+        buffers = new ByteBuffer[maxCount];
+        releases = new Runnable[maxCount];
+    }
+
+    //Добавление буфера в пакет; при достижении ограничений пакет записывается
+
+    public RC add(ByteBuffer data, Runnable release, StageMetrics metrics) {
+        buffers[count] = data;
+        releases[count] = release;
+        count++;
+        bytes += data.remaining();
+        if (count == buffers.length || bytes >= maxBytes)
+            return flush(metrics);
+        return RC.CODE_SUCCESS;
+    }
+
+    //Запись пакета: каждый вызов передает ядру все незаписанные буферы сразу
+
+    public RC flush(StageMetrics metrics) {
+        if (count == 0)
+            return RC.CODE_SUCCESS;
+        RC code = RC.CODE_SUCCESS;
+        long start = System.nanoTime();
+        long calls = 0;
+        int first = 0;  // - первый не записанный полностью буфер
+        try {
+            while (first < count) {
+                channel.write(buffers, first, count - first);
+                calls++;
+                while (first < count && !buffers[first].hasRemaining())
+                    first++;
+            }
+            metrics.written(bytes, System.nanoTime() - start);
+            metrics.syscalls(calls, count - calls); // - без сбора каждый буфер записывался бы отдельно
+        } catch (IOException e) { // - буферы возвращаются владельцам и при ошибке
+            code = RC.CODE_FAILED_TO_WRITE;
+        }
+        for (int i = 0; i < count; i++) {
+            if (releases[i] != null)
+                releases[i].run();
+            buffers[i] = null;
+            releases[i] = null;
+        }
+        count = 0;
+        bytes = 0;
+        return code;
+    }
+}
+
+//Класс буфера, заполненные массивы которого записываются пакетами через канал со сбором
+
+class GatherBuffer extends Buffer {
+    private final long maxBytes;    // - наибольший объем пакета
+    private final int maxCount; // - наибольшее количество буферов в пакете
+    private final ArrayDeque<byte[]> free = new ArrayDeque<byte[]>();  // - записанные массивы для повторного заполнения
+    private WriteBatch batch;   // - пакет, создаваемый при первой записи
+
+    //Конструктор
+
+    public GatherBuffer(long maxBytes, int maxCount) {
+        this.maxBytes = maxBytes;
+        this.maxCount = maxCount;
+    }
+
+    //Пакет записи, создаваемый после установки потока
+
+    private WriteBatch batch() {
+        if (batch == null)
+            batch = new WriteBatch(channel, maxBytes, maxCount);
+        return batch;
+    }
+
+    //Установка буфера определенного размера; перед заменой накопленный пакет записывается
+
+    public RC setBuffer(int size) {
+        if (batch != null) {
+            RC code = batch.flush(metrics);
+            if (code != RC.CODE_SUCCESS)
+                return code;
+        }
+        free.clear();
+        return super.setBuffer(size);
+    }
+
+    //Добавление крупной порции в пакет без копирования; порция возвращается в пул после записи
+
+    protected RC writeThrough(byte[] data, int offset, int length) {
+        return batch().add(ByteBuffer.wrap(data, offset, length), () -> release(data), metrics);
+    }
+
+    //Добавление заполненного массива в пакет и переход к свободному массиву
+
+    public RC write() {
+        if (filled == 0)
+            return RC.CODE_SUCCESS;
+        byte[] full = buffer;
+        int length = filled;
+        buffer = free.isEmpty() ? new byte[full.length] : free.poll();
+        filled = 0;
+        return batch().add(ByteBuffer.wrap(full, 0, length), () -> {
+            if (full.length == buffer.length)
+                free.push(full);
+        }, metrics);
+    }
+
+    //Запись накопленных данных вместе с пакетом без окончания записи
+
+    public RC flushPending() {
+        return finish();
+    }
+
+    //Запись оставшихся данных и накопленного пакета
+
+    public RC finish() {
+        RC code = write();
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        return batch().flush(metrics);
+    }
+}
+
+//Задание на запись диапазона массива в файл потоком сброса
+
+class FlushTask {
+    final byte[] data;  // - записываемые данные (null - служебное задание)
+    final int offset;   // - начало диапазона
+    final int length;   // - длина диапазона
+    final boolean chunk;    // - данные являются порцией конвейера и возвращаются в пул порций
+    final CountDownLatch done;  // - отметка о выполнении всех предыдущих заданий (для служебного задания)
+
+    //Конструктор
+
+    FlushTask(byte[] data, int offset, int length, boolean chunk, CountDownLatch done) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        this.chunk = chunk;
+        this.done = done;
+    }
+}
+
+//Класс буфера с асинхронной записью: заполненные буферы записывает отдельный поток сброса,
+//пока конвейер заполняет следующий; ошибка записи возвращается следующим вызовом
+
+class AsyncBuffer extends Buffer {
+    private final static FlushTask STOP = new FlushTask(null, 0, 0, false, null); // - задание остановки потока сброса
+
+    private final int count;    // - количество буферов
+    private final long maxBytes;    // - наибольший объем пакета записи со сбором (0 - без сбора)
+    private final int maxCount; // - наибольшее количество буферов в пакете
+    private WriteBatch batch;   // - пакет записи потока сброса
+    private final BlockingQueue<byte[]> free;   // - свободные буферы
+    private final BlockingQueue<FlushTask> tasks;   // - очередь заданий потока сброса
+    private Thread flusher; // - поток сброса
+    private volatile boolean failed;    // - признак ошибки записи в потоке сброса
+    private volatile int bufferSize;    // - текущий размер буферов (поток сброса не читает buffer конвейера)
+
+    //Конструктор
+
+    public AsyncBuffer(int count, long maxBytes, int maxCount) {
+        this.count = count;
+        this.maxBytes = maxBytes;
+        this.maxCount = maxCount;
+        free = new ArrayBlockingQueue<byte[]>(count);
+        tasks = new ArrayBlockingQueue<FlushTask>(count + 1);   // - с учетом служебного задания
+    }
+
+    //Установка буферов определенного размера; перед заменой дожидается записи уже переданных буферов
+
+    public RC setBuffer(int size) {
+        RC code = sync();
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        free.clear();
+        for (int i = 1; i < count; i++) // - один из буферов заполняется конвейером
+            free.offer(new byte[size]);
+        bufferSize = size;
+        return super.setBuffer(size);
+    }
+
+    //Возврат записанного массива: порция - в пул порций, буфер - в список свободных
+
+    private void recycle(FlushTask task) {
+        if (task.chunk)
+            release(task.data);
+        else if (task.data.length == bufferSize)    // - буферы прежнего размера не возвращаются
+            free.offer(task.data);
+    }
+
+    //Запись накопленного пакета
+
+    private void flushBatch() {
+        if (batch != null && batch.flush(metrics) != RC.CODE_SUCCESS)
+            failed = true;
+    }
+
+    //Цикл потока сброса; при записи со сбором все задания, скопившиеся в очереди, записываются одним пакетом
+
+    private void flush() {
+        if (maxBytes > 0)
+            batch = new WriteBatch(channel, maxBytes, maxCount);
+        while (true) {
+            FlushTask task;
+            try {
+                task = tasks.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task == STOP) {
+                flushBatch();
+                return;
+            }
+            if (task.data == null) {    // - все предыдущие задания выполнены
+                flushBatch();
+                task.done.countDown();
+                continue;
+            }
+            if (failed) {   // - после ошибки данные не записываются, но буферы возвращаются
+                recycle(task);
+                continue;
+            }
+            if (batch != null) {
+                if (batch.add(ByteBuffer.wrap(task.data, task.offset, task.length), () -> recycle(task), metrics) != RC.CODE_SUCCESS)
+                    failed = true;
+                if (tasks.isEmpty())    // - очередь пуста: пакет передается ядру
+                    flushBatch();
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                out.write(task.data, task.offset, task.length);
+                metrics.written(task.length, System.nanoTime() - start);
+            } catch (IOException e) { // - ошибка передается конвейеру при следующем вызове
+                failed = true;
+            }
+            recycle(task);
+        }
+    }
+
+    //Передача задания потоку сброса, запускаемому при первой записи
+
+    private RC submit(FlushTask task) {
+        if (failed)
+            return RC.CODE_FAILED_TO_WRITE;
+        if (flusher == null) {
+            flusher = new Thread(this::flush, "pipeline-Writer-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+        try {
+            tasks.put(task);    // - ожидание при заполненной очереди
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return RC.CODE_FAILED_TO_WRITE;
+        }
+        return RC.CODE_SUCCESS;
+    }
+
+    //Ожидание записи всех переданных потоку сброса данных
+
+    private RC sync() {
+        if (flusher == null)
+            return failed ? RC.CODE_FAILED_TO_WRITE : RC.CODE_SUCCESS;
+        CountDownLatch done = new CountDownLatch(1);
+        RC code = submit(new FlushTask(null, 0, 0, false, done));
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return RC.CODE_FAILED_TO_WRITE;
+        }
+        return failed ? RC.CODE_FAILED_TO_WRITE : RC.CODE_SUCCESS;
+    }
+
+    //Добавление порции с проверкой ошибки предыдущих записей
+
+    public RC add(byte[] data) {
+        if (failed)
+            return RC.CODE_FAILED_TO_WRITE;
+        return super.add(data);
+    }
+
+    //Передача крупной порции потоку сброса без копирования; порция возвращается в пул после записи
+
+    protected RC writeThrough(byte[] data, int offset, int length) {
+        return submit(new FlushTask(data, offset, length, true, null));
+    }
+
+    //Передача заполненного буфера потоку сброса и переход к свободному буферу
+
+    public RC write() {
+        if (filled == 0)
+            return failed ? RC.CODE_FAILED_TO_WRITE : RC.CODE_SUCCESS;
+        RC code = submit(new FlushTask(buffer, 0, filled, false, null));
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        try {
+            buffer = free.take();   // - ожидание освобождения буфера потоком сброса
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return RC.CODE_FAILED_TO_WRITE;
+        }
+        filled = 0;
+        return RC.CODE_SUCCESS;
+    }
+
+    //Запись оставшихся данных и ожидание окончания работы потока сброса
+
+    public RC finish() {
+        RC code = write();
+        RC synced = sync();
+        close();
+        return code != RC.CODE_SUCCESS ? code : synced;
+    }
+
+    //Остановка потока сброса
+
+    public void close() {
+        if (flusher == null)
+            return;
+        if (!tasks.offer(STOP))   // - очередь заполнена только при остановке после ошибки конвейера
+            flusher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flusher = null;
+    }
+}
+
+//Класс модуля записи данных в файл
+
+public class Writer implements IWriter, IBufferExecutable, IFlushable, Reloadable, ChunkSink {
+    private static Logger LOGGER;   // - ссылка на логгер
+
+    private final static String[] tokens = {"SIZE_TO_WRITE"};   // - токен конфига модуля записи
+
+    private enum tokenInd {SIZE_TO_WRITE}   // - индекс токена
+
+    private final static String[] optionalTokens = {"WRITE_MODE", "BUFFERS", "GATHER_BYTES", "GATHER_COUNT",
+            "MIN_SIZE_TO_WRITE", "MAX_SIZE_TO_WRITE"};  // - необязательные токены конфига модуля записи
+
+    private enum optionalTokenInd {WRITE_MODE, BUFFERS, GATHER_BYTES, GATHER_COUNT, MIN_SIZE_TO_WRITE, MAX_SIZE_TO_WRITE} // - индексы необязательных токенов
+
+    //Принимаемые значения режима записи
+
+    private final static String[] writeModeVal = {"sync", "async"};
+
+    private enum WriteMode {SYNC, ASYNC}    // - представление для хранения режима записи
+
+    private final static int DEFAULT_BUFFERS = 2;   // - количество буферов асинхронной записи по умолчанию
+    private final static int DEFAULT_GATHER_COUNT = 64; // - количество буферов в пакете записи со сбором по умолчанию
+    private final static int MAX_GATHER_COUNT = 1024;   // - ограничение системы на количество буферов в одном вызове
+
+    private IExecutable producer;   // - ссылка на производителя
+    private IExecutable consumer;   // - ссылка на потребителя
+
+    private String configFileName;  // - имя файла конфига
+    private Map<String, String> map;    // - словарь с содержимым конфига
+
+    private int sizeToWrite;    // - размер буфера для записи
+    private AutoTuner tuner;    // - подбор размера буфера при значении auto (null - размер задан)
+    private BlockChecksum checksum; // - контрольные суммы записанных данных (null - не считаются)
+    private String checksumFileName;    // - файл, в который сохраняются суммы
+    private WriteMode writeMode;    // - режим записи
+    private int buffers;    // - количество буферов асинхронной записи
+    private long gatherBytes;   // - наибольший объем пакета записи со сбором (0 - запись без сбора)
+    private int gatherCount;    // - наибольшее количество буферов в пакете
+    private WriteBatch batch;   // - пакет записи со сбором для конвейера буферов
+    private Buffer buffer;  // - буфер для записи
+    private final AtomicInteger pendingSize = new AtomicInteger();  // - размер буфера из измененного конфига, 0 - нет изменений
+    private ChunkPool pool; // - пул, в который возвращаются записанные порции
+    private BufferPool bufferPool;  // - пул, в который возвращаются записанные буферы
+    private GatheringByteChannel channel;   // - канал записи для конвейера буферов
+    private ByteBuffer staging; // - буфер вне кучи для накопления мелких порций конвейера буферов
+    private final ArrayDeque<ByteBuffer> spare = new ArrayDeque<ByteBuffer>();   // - записанные буферы накопления
+    private StageMetrics metrics = new StageMetrics(Writer.class.getSimpleName()); // - счетчики модуля
+    private ChunkLog chunkLog;  // - сводка записанных порций для лога
+
+    //Конструктор
+
+    public Writer(Logger logger) {
+        LOGGER = logger;
+        chunkLog = new ChunkLog(logger, Writer.class, "Saving data into buffer");
+    }
+
+    //Установка производителя
+
+    public RC setProducer(IExecutable p) {
+        if (p == null || !(p instanceof Executor || p instanceof Compressor || p instanceof Receiver)) {
+            LOGGER.severe("Wrong producer");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        producer = p;
+        LOGGER.info("Producer set successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка потребителя
+
+    public RC setConsumer(IExecutable c) {
+        if (c != null) {
+            LOGGER.severe("Wrong consumer");
+            return RC.CODE_FAILED_PIPELINE_CONSTRUCTION;
+        }
+        consumer = c;
+        LOGGER.info("Consumer set successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка потока записи
+
+    public RC setOutputStream(FileOutputStream fos) {
+        RC code;
+        channel = fos.getChannel();
+        code = buffer.setOutputStream(fos);
+        LOGGER.info("Output stream is set");
+        return code;
+    }
+
+    //Установка канала записи (сокета), для которого нет файлового потока
+
+    public RC setOutputChannel(GatheringByteChannel channel) {
+        if (channel == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        this.channel = channel;
+        LOGGER.info("Output channel is set");
+        return buffer.setOutputChannel(channel);
+    }
+
+    //Установка пула, в который возвращаются порции после их копирования в буфер
+
+    public RC setChunkPool(ChunkPool pool) {
+        this.pool = pool;
+        LOGGER.info("Chunk pool is set");
+        return buffer.setChunkPool(pool);
+    }
+
+    //Установка пула, в который возвращаются буферы после записи
+
+    public RC setBufferPool(BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+        LOGGER.info("Buffer pool is set");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка подсчета контрольных сумм записываемых данных с сохранением их в файл после записи
+
+    public RC setChecksum(BlockChecksum checksum, String checksumFileName) {
+        if (checksum == null || checksumFileName == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        this.checksum = checksum;
+        this.checksumFileName = checksumFileName;
+        LOGGER.info("Output checksums are computed");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Установка подсчета контрольных сумм записываемых данных без сохранения: суммы сохраняет менеджер,
+    //когда это допустимо (в режиме verify - только после успешной сверки входа)
+
+    public RC setChecksum(BlockChecksum checksum) {
+        if (checksum == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        this.checksum = checksum;
+        checksumFileName = null;
+        LOGGER.info("Output checksums are computed");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Завершение подсчета контрольных сумм и сохранение их в файл, если он задан
+
+    private RC saveChecksum() {
+        if (checksum == null)
+            return RC.CODE_SUCCESS;
+        checksum.finish();
+        if (checksumFileName == null)
+            return RC.CODE_SUCCESS;
+        return checksum.save(checksumFileName);
+    }
+
+    //Количество порций заданного размера, которые модуль может удерживать до их записи
+
+    public int getRetained(int chunkSize) {
+        int retained = 0;
+        if (gatherBytes > 0)    // - порции в пакете записи со сбором
+            retained += (int) Math.min(gatherCount, gatherBytes / chunkSize + 1);
+        if (writeMode == WriteMode.ASYNC)   // - порции в очереди потока сброса
+            retained += buffers + 1;
+        return retained;
+    }
+
+    //Установка счетчиков модуля
+
+    public RC setMetrics(StageMetrics metrics) {
+        this.metrics = metrics;
+        return buffer.setMetrics(metrics);
+    }
+
+    //Метод, проверящий и обрабатывающий значения токенов в конфиге
+
+    public RC dataValidation() {
+        String value = map.get(tokens[tokenInd.SIZE_TO_WRITE.ordinal()]);
+        boolean auto = value.toLowerCase().equals(AutoTuner.AUTO);  // - размер подбирается во время работы
+        int min = AutoTuner.DEFAULT_MIN, max = AutoTuner.DEFAULT_MAX;
+        try {   //Преобразовние строки в целое значение
+            sizeToWrite = auto ? AutoTuner.DEFAULT_SIZE : Integer.parseInt(value);
+            if (map.containsKey(optionalTokens[optionalTokenInd.MIN_SIZE_TO_WRITE.ordinal()]))
+                min = Integer.parseInt(map.get(optionalTokens[optionalTokenInd.MIN_SIZE_TO_WRITE.ordinal()]));
+            if (map.containsKey(optionalTokens[optionalTokenInd.MAX_SIZE_TO_WRITE.ordinal()]))
+                max = Integer.parseInt(map.get(optionalTokens[optionalTokenInd.MAX_SIZE_TO_WRITE.ordinal()]));
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + tokens[tokenInd.SIZE_TO_WRITE.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (sizeToWrite < 1 || min < 1 || max < min) {  // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + tokens[tokenInd.SIZE_TO_WRITE.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        tuner = null;
+        if (auto) {
+            tuner = new AutoTuner(LOGGER, tokens[tokenInd.SIZE_TO_WRITE.ordinal()], sizeToWrite, min, max);
+            sizeToWrite = tuner.size();
+        }
+        LOGGER.info(tokens[tokenInd.SIZE_TO_WRITE.ordinal()] + " value is valid");
+
+        //Установка режима записи
+
+        String mode = map.get(optionalTokens[optionalTokenInd.WRITE_MODE.ordinal()]);
+        if (mode == null || mode.toLowerCase().equals(writeModeVal[WriteMode.SYNC.ordinal()]))
+            writeMode = WriteMode.SYNC;
+        else if (mode.toLowerCase().equals(writeModeVal[WriteMode.ASYNC.ordinal()]))
+            writeMode = WriteMode.ASYNC;
+        else {  //Обработка случая неверного значения режима записи
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.WRITE_MODE.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+
+        //Установка количества буферов асинхронной записи
+
+        String count = map.get(optionalTokens[optionalTokenInd.BUFFERS.ordinal()]);
+        buffers = DEFAULT_BUFFERS;
+        try {
+            if (count != null)
+                buffers = Integer.parseInt(count);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.BUFFERS.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (buffers < 2) {  // - двойная буферизация требует хотя бы двух буферов
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.BUFFERS.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+
+        //Установка ограничений пакета записи со сбором
+
+        String bytes = map.get(optionalTokens[optionalTokenInd.GATHER_BYTES.ordinal()]);
+        String number = map.get(optionalTokens[optionalTokenInd.GATHER_COUNT.ordinal()]);
+        gatherBytes = 0;
+        gatherCount = DEFAULT_GATHER_COUNT;
+        try {
+            if (bytes != null)
+                gatherBytes = Long.parseLong(bytes);
+            if (number != null)
+                gatherCount = Integer.parseInt(number);
+        } catch (NumberFormatException e) {   // - обработка исключения неверного значения
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.GATHER_BYTES.ordinal()] + " or "
+                    + optionalTokens[optionalTokenInd.GATHER_COUNT.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        if (gatherBytes < 0 || gatherCount < 1 || gatherCount > MAX_GATHER_COUNT) { // - проверка допустимого диапазона значений
+            LOGGER.severe("Invalid " + optionalTokens[optionalTokenInd.GATHER_BYTES.ordinal()] + " or "
+                    + optionalTokens[optionalTokenInd.GATHER_COUNT.ordinal()] + " value");
+            return RC.CODE_CONFIG_SEMANTIC_ERROR;
+        }
+        LOGGER.info("Writer values are valid");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод чтения и обработки конфига модуля записи, а также создания буфера
+
+    private RC readConfig() {
+        BaseSemantics sem = new BaseSemantics(LOGGER, tokens, optionalTokens);  // - создание экземпляра класса семантической обработки
+        sem.setConfig(configFileName);  // - установка конфига менеджера
+        RC code = sem.readConfig(); // - чтение и парсинг конфига
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        code = sem.run();   // - проведение семантического анализа
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        map = sem.getMap(); // - получение обработанного содержимого конфига
+        code = dataValidation();    // - обработка содержимого конфига
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        if (writeMode == WriteMode.ASYNC)   // - создание экземпляра буфера
+            buffer = new AsyncBuffer(buffers, gatherBytes, gatherCount);
+        else if (gatherBytes > 0)
+            buffer = new GatherBuffer(gatherBytes, gatherCount);
+        else
+            buffer = new Buffer();
+        code = buffer.setBuffer(sizeToWrite); // - создание буфера определенного размера
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        LOGGER.info("Writer config file read successfully");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Метод установки имени конфига, работы с ним и с буфером
+
+    public RC setConfig(String configFileName) {
+        if (configFileName == null) {
+            LOGGER.severe("Null pointer");
+            return RC.CODE_INVALID_ARGUMENT;
+        }
+        this.configFileName = configFileName;
+        LOGGER.info("Config file name is set");
+        return readConfig();
+    }
+
+    //Повторное чтение конфига: новый размер буфера применяется в потоке конвейера перед следующей порцией
+
+    public RC reload() {
+        Writer fresh = new Writer(LOGGER);  // - проверка конфига без изменения текущих значений
+        RC code = fresh.setConfig(configFileName);
+        if (code != RC.CODE_SUCCESS) {
+            LOGGER.warning("Writer config is not reloaded, previous values are kept");
+            return code;
+        }
+        if (fresh.tuner != null) {  // - подбираемый размер остается текущим
+            LOGGER.info("Writer buffer size is tuned at run time, reload is not needed");
+            return RC.CODE_SUCCESS;
+        }
+        pendingSize.set(fresh.sizeToWrite);
+        LOGGER.info("Writer values are reloaded");
+        return RC.CODE_SUCCESS;
+    }
+
+    //Замена буфера: накопленные данные записываются, затем создается буфер нового размера
+
+    private RC resize(int size) {
+        if (size == sizeToWrite)
+            return RC.CODE_SUCCESS;
+        RC code = buffer.write();
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        code = flush();
+        if (code == RC.CODE_SUCCESS && batch != null)
+            code = batch.flush(metrics);
+        if (code != RC.CODE_SUCCESS)
+            return code;
+        staging = null; // - буфер вне кучи будет создан заново с новым размером
+        spare.clear();
+        sizeToWrite = size;
+        return buffer.setBuffer(size);
+    }
+
+    //Освобождение ресурсов модуля после остановки конвейера
+
+    public RC close() {
+        buffer.close(); // - остановка потока сброса, если конвейер завершился до конца данных
+        return RC.CODE_SUCCESS;
+    }
+
+    //Запись неполного буфера, пока конвейер ожидает новых данных: выход отстает от входа не больше,
+    //чем на время ожидания, а не на размер буфера
+
+    public RC flushPending() {
+        RC code = buffer.flushPending();
+        if (code == RC.CODE_SUCCESS)
+            code = flush();
+        if (code == RC.CODE_SUCCESS && batch != null)
+            code = batch.flush(metrics);
+        if (code != RC.CODE_SUCCESS)
+            LOGGER.severe("Couldn't write data to output file");
+        return code;
+    }
+
+    //Метод, выполняющий заполнение буфера и своевременную запись его содержимого в файл
+
+    public RC execute(byte[] data) {
+        RC code = RC.CODE_SUCCESS;
+        if (pendingSize.get() != 0) {   // - применение измененного конфига между порциями
+            tuner = null;   // - заданный в конфиге размер отменяет подбор
+            code = resize(pendingSize.getAndSet(0));
+            if (code != RC.CODE_SUCCESS)
+                return code;
+        }
+        if (data == null) {    // - обработка случая достижения конца файла
+            chunkLog.finish();
+            LOGGER.info("Writing the remaining data");
+            code = buffer.finish(); // - запись оставшихся данных в файл
+            return code != RC.CODE_SUCCESS ? code : saveChecksum();
+        }
+        if (checksum != null)
+            checksum.update(data, 0, data.length);  // - сумма считается до возврата порции в пул
+        chunkLog.hit(data.length);
+        long start = System.nanoTime();
+        code = buffer.add(data);    // - копирование порции в буфер с записью его содержимого в файл при заполнении
+        if (code != RC.CODE_SUCCESS) {
+            LOGGER.severe("Couldn't write data to output file");
+            return code;
+        }
+        long nanos = System.nanoTime() - start;
+        metrics.chunk(data.length, 0, nanos);  // - порция возвращается в пул буфером после записи
+        return tune(data.length, nanos);
+    }
+
+    //Запись буфера в канал целиком либо добавление его в пакет записи со сбором;
+    //после записи буфер возвращается владельцу
+
+    private RC writeChannel(ByteBuffer data, Runnable release) {
+        if (batch != null)
+            return batch.add(data, release, metrics);
+        long start = System.nanoTime();
+        int length = data.remaining();
+        try {
+            while (data.hasRemaining())
+                channel.write(data);
+            metrics.written(length, System.nanoTime() - start);
+        } catch (IOException e) { // - обработка исключения
+            return RC.CODE_FAILED_TO_WRITE;
+        }
+        release.run();
+        return RC.CODE_SUCCESS;
+    }
+
+    //Запись накопленных мелких порций конвейера буферов; накопление продолжается в свободном буфере
+
+    private RC flush() {
+        if (staging == null || staging.position() == 0)
+            return RC.CODE_SUCCESS;
+        ByteBuffer full = staging;
+        full.flip();
+        staging = spare.isEmpty() ? ByteBuffer.allocateDirect(sizeToWrite) : spare.poll();
+        return writeChannel(full, () -> {
+            full.clear();
+            if (full.capacity() == sizeToWrite)
+                spare.push(full);
+        });
+    }
+
+    //Метод, записывающий буфер в канал: крупные порции передаются в канал как есть,
+    //мелкие накапливаются в буфере вне кучи размера SIZE_TO_WRITE
+
+    public RC execute(ByteBuffer data) {
+        RC code = RC.CODE_SUCCESS;
+        if (pendingSize.get() != 0) {   // - применение измененного конфига между порциями
+            tuner = null;   // - заданный в конфиге размер отменяет подбор
+            code = resize(pendingSize.getAndSet(0));
+            if (code != RC.CODE_SUCCESS)
+                return code;
+        }
+        if (batch == null && gatherBytes > 0)
+            batch = new WriteBatch(channel, gatherBytes, gatherCount);
+        if (data == null) {    // - обработка случая достижения конца файла
+            chunkLog.finish();
+            LOGGER.info("Writing the remaining data");
+            code = flush();
+            if (code == RC.CODE_SUCCESS && batch != null)
+                code = batch.flush(metrics);
+            if (code != RC.CODE_SUCCESS) {
+                LOGGER.severe("Couldn't write data to output file");
+                return code;
+            }
+            return saveChecksum();
+        }
+        if (checksum != null)
+            checksum.update(data);  // - сумма считается до возврата буфера в пул
+        chunkLog.hit(data.remaining());
+        long start = System.nanoTime();
+        int length = data.remaining();
+        boolean retained = false;   // - буфер передан на запись целиком и вернется в пул после нее
+        while (code == RC.CODE_SUCCESS && data.hasRemaining()) {
+            if ((staging == null || staging.position() == 0) && data.remaining() >= sizeToWrite) {
+                code = writeChannel(data, () -> release(data));   // - крупная порция записывается напрямую, без копирования
+                retained = true;
+                break;
+            }
+            if (staging == null)
+                staging = ByteBuffer.allocateDirect(sizeToWrite);
+            int count = Math.min(staging.remaining(), data.remaining());
+            ByteBuffer part = data.duplicate();
+            part.limit(part.position() + count);
+            staging.put(part);  // - копирование диапазона в буфер
+            data.position(data.position() + count);
+            if (!staging.hasRemaining())
+                code = flush();
+        }
+        if (code != RC.CODE_SUCCESS) {
+            LOGGER.severe("Couldn't write data to output file");
+            return code;
+        }
+        long nanos = System.nanoTime() - start;
+        metrics.chunk(length, 0, nanos);
+        if (!retained)
+            release(data);  // - буфер больше не нужен конвейеру
+        return tune(length, nanos);
+    }
+
+    //Учет порции при автоматическом подборе размера и смена размера буфера по его результату
+
+    private RC tune(long bytes, long nanos) {
+        if (tuner == null)
+            return RC.CODE_SUCCESS;
+        RC code = resize(tuner.observe(bytes, nanos));
+        if (code != RC.CODE_SUCCESS)
+            LOGGER.severe("Couldn't write data to output file");
+        return code;
+    }
+
+    //Возврат буфера в пул модуля чтения
+
+    private void release(ByteBuffer data) {
+        if (bufferPool != null)
+            bufferPool.release(data);
+    }
+}
@@ -0,0 +1,86 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.spbstu.pipeline.IExecutor;
+import ru.spbstu.pipeline.IReader;
+import ru.spbstu.pipeline.IWriter;
+import ru.spbstu.pipeline.RC;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Бенчмарк чтения файла модулем Reader в зависимости от SIZE_TO_READ и режима чтения;
+//за ним стоят сдвиг и запись в /dev/null, чтобы порции проходили весь путь до пула
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReaderBenchmark {
+    private final static long FILE_SIZE = 64L << 20;    // - размер входного файла, кратный всем SIZE_TO_READ
+    private final static int BLOCK_SIZE = 1 << 20;  // - размер блока случайных данных при создании файла
+
+    @Param({"64", "4096", "65536", "1048576"})
+    private int sizeToRead;
+
+    @Param({"stream", "mmap"})
+    private String readMode;
+
+    private File input; // - входной файл
+    private IReader reader; // - модуль чтения
+    private FileOutputStream fos;   // - поток записи
+
+    @Setup
+    public void setup() throws Exception {
+        input = File.createTempFile("bench", ".bin");
+        input.deleteOnExit();
+        byte[] block = new byte[BLOCK_SIZE];
+        Random random = new Random(FILE_SIZE);
+        try (FileOutputStream out = new FileOutputStream(input)) {  // - файл заполняется данными, а не разреженными нулями
+            for (long written = 0; written < FILE_SIZE; written += BLOCK_SIZE) {
+                random.nextBytes(block);
+                out.write(block);
+            }
+        }
+        reader = Stages.reader("SIZE_TO_READ " + sizeToRead + "\nREAD_MODE " + readMode + "\n");
+        IExecutor executor = Stages.executor("SHIFT_AMOUNT 3\nSHIFT_DIRECTION left\n");
+        IWriter writer = Stages.writer("SIZE_TO_WRITE 1048576\n");
+        fos = new FileOutputStream("/dev/null");
+        Stages.check(writer.setOutputStream(fos));
+        Stages.check(reader.setConsumer(executor));
+        Stages.check(executor.setProducer(reader));
+        Stages.check(executor.setConsumer(writer));
+        Stages.check(writer.setProducer(executor));
+        Stages.sharePool(reader, writer);
+    }
+
+    @Benchmark
+    public RC readFile() throws Exception {
+        try (FileInputStream fis = new FileInputStream(input)) {
+            reader.setInputStream(fis);
+            return reader.execute(null);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fos.close();
+        input.delete();
+    }
+}
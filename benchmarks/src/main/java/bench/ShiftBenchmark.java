@@ -0,0 +1,57 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.spbstu.pipeline.IExecutor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Бенчмарк Executor.doShift для всех величин и направлений сдвига
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShiftBenchmark {
+    @Param({"1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15"})
+    private int shiftAmount;
+
+    @Param({"left", "right"})
+    private String shiftDirection;
+
+    @Param({"4096", "1048576"})
+    private int chunkSize;
+
+    private MethodHandle doShift;   // - закрытый метод сдвига, привязанный к модулю
+    private byte[] data;    // - сдвигаемая порция
+
+    @Setup
+    public void setup() throws Exception {
+        IExecutor executor = Stages.executor("SHIFT_AMOUNT " + shiftAmount + "\nSHIFT_DIRECTION " + shiftDirection + "\n");
+        MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(executor.getClass(), MethodHandles.lookup());
+        doShift = lookup.findVirtual(executor.getClass(), "doShift", MethodType.methodType(byte[].class, byte[].class))
+                .bindTo(executor);
+        data = new byte[chunkSize];
+        new Random(chunkSize).nextBytes(data);
+    }
+
+    @Benchmark
+    public byte[] doShift() throws Throwable {
+        return (byte[]) doShift.invokeExact(data);
+    }
+}
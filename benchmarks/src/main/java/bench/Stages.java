@@ -0,0 +1,82 @@
+package bench;
+
+import ru.spbstu.pipeline.IExecutor;
+import ru.spbstu.pipeline.IReader;
+import ru.spbstu.pipeline.IWriter;
+import ru.spbstu.pipeline.RC;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//Создание модулей конвейера для бенчмарков: классы конвейера лежат в безымянном пакете,
+//поэтому экземпляры создаются через рефлексию и используются через интерфейсы ru.spbstu.pipeline
+
+final class Stages {
+    private final static Logger LOGGER = Logger.getLogger("bench");    // - логгер модулей, выводящий только ошибки
+
+    static {
+        LOGGER.setLevel(Level.SEVERE);
+    }
+
+    private Stages() {
+    }
+
+    //Создание экземпляра класса конвейера по имени
+
+    static Object create(String className) {
+        try {
+            return Class.forName(className).getConstructor(Logger.class).newInstance(LOGGER);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(className + " is unavailable", e);
+        }
+    }
+
+    //Запись временного конфига модуля
+
+    static String config(String content) throws IOException {
+        File file = File.createTempFile("bench", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file.getPath();
+    }
+
+    //Проверка кода возврата при настройке модулей
+
+    static void check(RC code) {
+        if (code != RC.CODE_SUCCESS)
+            throw new IllegalStateException("Stage setup failed: " + code);
+    }
+
+    static IReader reader(String config) throws IOException {
+        IReader reader = (IReader) create("Reader");
+        check(reader.setConfig(config(config)));
+        return reader;
+    }
+
+    static IExecutor executor(String config) throws IOException {
+        IExecutor executor = (IExecutor) create("Executor");
+        check(executor.setConfig(config(config)));
+        return executor;
+    }
+
+    static IWriter writer(String config) throws IOException {
+        IWriter writer = (IWriter) create("Writer");
+        check(writer.setConfig(config(config)));
+        return writer;
+    }
+
+    //Передача пула порций модуля чтения модулю записи, как это делает Manager
+
+    static void sharePool(IReader reader, IWriter writer) {
+        try {
+            Object pool = reader.getClass().getMethod("getChunkPool").invoke(reader);
+            writer.getClass().getMethod("setChunkPool", Class.forName("ChunkPool")).invoke(writer, pool);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Chunk pool is unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.spbstu.pipeline.IWriter;
+import ru.spbstu.pipeline.RC;
+
+import java.io.FileOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Бенчмарк Writer.execute в зависимости от SIZE_TO_WRITE; данные пишутся в /dev/null
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriterBenchmark {
+    @Param({"64", "512", "4096", "65536", "1048576"})
+    private int sizeToWrite;
+
+    @Param({"4096", "65536"})
+    private int chunkSize;
+
+    private IWriter writer; // - модуль записи
+    private FileOutputStream fos;   // - поток записи
+    private byte[] data;    // - записываемая порция
+
+    @Setup
+    public void setup() throws Exception {
+        writer = Stages.writer("SIZE_TO_WRITE " + sizeToWrite + "\n");
+        fos = new FileOutputStream("/dev/null");
+        Stages.check(writer.setOutputStream(fos));
+        data = new byte[chunkSize];
+        new Random(chunkSize).nextBytes(data);
+    }
+
+    @Benchmark
+    public RC execute() {
+        return writer.execute(data);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        writer.execute(null);
+        fos.close();
+    }
+}
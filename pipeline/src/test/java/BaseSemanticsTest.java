@@ -0,0 +1,76 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.spbstu.pipeline.RC;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//Проверка семантического анализа конфига: обязательные, необязательные, неизвестные и повторяющиеся токены
+
+class BaseSemanticsTest {
+    private final static Logger LOGGER = Logger.getLogger(BaseSemanticsTest.class.getName());
+
+    static {
+        LOGGER.setLevel(Level.OFF);
+    }
+
+    @TempDir
+    Path dir;
+
+    //Разбор конфига с заданным содержимым
+
+    private BaseSemantics semantics(String content) throws IOException {
+        Path config = Files.createTempFile(dir, "config", ".txt");
+        Files.write(config, content.getBytes());
+        BaseSemantics sem = new BaseSemantics(LOGGER, new String[]{"INPUT", "OUTPUT"}, new String[]{"CHECKSUM"});
+        sem.setConfig(config.toString());
+        assertEquals(RC.CODE_SUCCESS, sem.readConfig());
+        return sem;
+    }
+
+    @Test
+    void acceptsRequiredAndOptionalTokens() throws IOException {
+        BaseSemantics sem = semantics("INPUT in.txt\nOUTPUT out.txt\n\nCHECKSUM on\n");
+        assertEquals(RC.CODE_SUCCESS, sem.run());
+        assertEquals("in.txt", sem.getMap().get("INPUT"));
+        assertEquals("on", sem.getMap().get("CHECKSUM"));
+    }
+
+    @Test
+    void rejectsMissingRequiredToken() throws IOException {
+        assertEquals(RC.CODE_CONFIG_SEMANTIC_ERROR, semantics("INPUT in.txt\nCHECKSUM on\n").run());
+    }
+
+    @Test
+    void rejectsUnknownToken() throws IOException {
+        assertEquals(RC.CODE_CONFIG_SEMANTIC_ERROR, semantics("INPUT in.txt\nOUTPUT out.txt\nMODE fast\n").run());
+    }
+
+    @Test
+    void rejectsRepeatedToken() throws IOException {
+        assertEquals(RC.CODE_CONFIG_SEMANTIC_ERROR, semantics("INPUT in.txt\nOUTPUT out.txt\nINPUT other.txt\n").run());
+    }
+
+    @Test
+    void readFileBypassesCache() throws IOException {
+        Path config = Files.createTempFile(dir, "data", ".txt");
+        Files.write(config, "INPUT in.txt\nOUTPUT out.txt\n".getBytes());
+        FileTime modified = Files.getLastModifiedTime(config);
+        BaseSemantics cached = new BaseSemantics(LOGGER, new String[]{"INPUT", "OUTPUT"});
+        cached.setConfig(config.toString());
+        assertEquals(RC.CODE_SUCCESS, cached.readConfig());
+        Files.write(config, "INPUT next.txt\nOUTPUT out.txt\n".getBytes());
+        Files.setLastModifiedTime(config, modified);    // - кэш не заметит перезаписи
+        BaseSemantics sem = new BaseSemantics(LOGGER, new String[]{"INPUT", "OUTPUT"});
+        sem.setConfig(config.toString());
+        assertEquals(RC.CODE_SUCCESS, sem.readFile());
+        assertEquals(RC.CODE_SUCCESS, sem.run());
+        assertEquals("next.txt", sem.getMap().get("INPUT"));
+    }
+}
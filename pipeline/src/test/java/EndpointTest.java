@@ -0,0 +1,56 @@
+import org.junit.jupiter.api.Test;
+import ru.spbstu.pipeline.RC;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//Проверка разбора конечных точек INPUT и OUTPUT: файлы, стандартные потоки и сокеты
+
+class EndpointTest {
+    private final static Logger LOGGER = Logger.getLogger(EndpointTest.class.getName());
+
+    static {
+        LOGGER.setLevel(Level.OFF);
+    }
+
+    //Разбор конечной точки с проверкой кода возврата
+
+    private static Endpoint parse(String spec, RC expected) {
+        Endpoint endpoint = new Endpoint(LOGGER, spec);
+        assertEquals(expected, endpoint.parse(), spec);
+        return endpoint;
+    }
+
+    @Test
+    void acceptsFilesAndStandardStreams() {
+        assertTrue(parse("data/in.bin", RC.CODE_SUCCESS).isPath());
+        Endpoint stdio = parse(Endpoint.STDIO, RC.CODE_SUCCESS);
+        assertFalse(stdio.isPath());
+        assertFalse(stdio.isSocket());
+    }
+
+    @Test
+    void acceptsSockets() {
+        assertTrue(parse("tcp://localhost:9000", RC.CODE_SUCCESS).isSocket());
+        assertTrue(parse("tcp://127.0.0.1:9000?listen", RC.CODE_SUCCESS).isSocket());
+        assertTrue(parse("tcp://:9000?listen", RC.CODE_SUCCESS).isSocket());   // - ожидание на всех адресах
+        assertTrue(parse("unix:/tmp/pipeline.sock", RC.CODE_SUCCESS).isSocket());
+        assertTrue(parse("unix:/tmp/pipeline.sock?listen", RC.CODE_SUCCESS).isSocket());
+    }
+
+    @Test
+    void rejectsInvalidEndpoints() {
+        parse("", RC.CODE_CONFIG_SEMANTIC_ERROR);
+        parse("tcp://:9000", RC.CODE_CONFIG_SEMANTIC_ERROR);    // - для подключения нужен узел
+        parse("tcp://localhost", RC.CODE_CONFIG_SEMANTIC_ERROR);
+        parse("tcp://localhost:70000", RC.CODE_CONFIG_SEMANTIC_ERROR);
+        parse("unix:", RC.CODE_CONFIG_SEMANTIC_ERROR);
+        parse("data/in.bin?listen", RC.CODE_CONFIG_SEMANTIC_ERROR);
+        parse("-?listen", RC.CODE_CONFIG_SEMANTIC_ERROR);
+        assertEquals(RC.CODE_INVALID_ARGUMENT, new Endpoint(LOGGER, null).parse());
+    }
+}
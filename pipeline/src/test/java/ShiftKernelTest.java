@@ -0,0 +1,133 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+//Сверка ядра сдвига, обрабатывающего по 8 байт за шаг, с побайтовым сдвигом
+//на всех величинах сдвига, длинах с остатком и смещениях диапазона
+
+class ShiftKernelTest {
+    private final static int BYTE_SIZE = 8; // - размер байта в битах
+    private final static int MAX_LENGTH = 67;   // - наибольшая длина проверочного массива
+    private final static int MAX_OFFSET = 9;    // - наибольшее смещение начала диапазона
+
+    private final Random random = new Random(42);
+
+    //Эталонный циклический сдвиг байта влево
+
+    private static byte shiftLeft(byte data, int shiftAmount) {
+        int x = data & 0xFF;
+        int y = shiftAmount % BYTE_SIZE;
+        return (byte) ((x << y) | (x >> (BYTE_SIZE - y)));
+    }
+
+    //Эталонный циклический сдвиг байта вправо
+
+    private static byte shiftRight(byte data, int shiftAmount) {
+        int x = data & 0xFF;
+        int y = shiftAmount % BYTE_SIZE;
+        return (byte) ((x >> y) | (x << (BYTE_SIZE - y)));
+    }
+
+    //Эталонный побайтовый сдвиг диапазона
+
+    private static byte[] shiftScalar(byte[] data, int from, int to, int shiftAmount) {
+        byte[] result = Arrays.copyOf(data, data.length);
+        for (int i = from; i < to; i++)
+            result[i] = shiftLeft(result[i], shiftAmount);
+        return result;
+    }
+
+    //Случайный массив заданной длины
+
+    private byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        random.nextBytes(data);
+        return data;
+    }
+
+    //Результат ядра на буфере: байты вне диапазона, позиция и граница буфера не меняются
+
+    private static byte[] applyToBuffer(ShiftKernel kernel, ByteBuffer buffer, byte[] data, int from, int to) {
+        buffer.put(data).flip();
+        kernel.apply(buffer, from, to);
+        byte[] result = new byte[data.length];
+        buffer.get(result);
+        return result;
+    }
+
+    @Test
+    void arrayMatchesScalarShift() {
+        for (int amount = 0; amount < 2 * BYTE_SIZE; amount++) {
+            ShiftKernel kernel = new ShiftKernel(amount);
+            for (int length = 0; length <= MAX_LENGTH; length++) {
+                for (int from = 0; from <= Math.min(MAX_OFFSET, length); from++) {
+                    byte[] data = randomBytes(length);
+                    byte[] expected = shiftScalar(data, from, length, amount);
+                    kernel.apply(data, from, length);
+                    assertArrayEquals(expected, data, "amount " + amount + ", length " + length + ", from " + from);
+                }
+            }
+        }
+    }
+
+    @Test
+    void buffersMatchScalarShift() {
+        for (int amount = 0; amount < 2 * BYTE_SIZE; amount++) {
+            ShiftKernel kernel = new ShiftKernel(amount);
+            for (int length = 0; length <= MAX_LENGTH; length++) {
+                for (int from = 0; from <= Math.min(MAX_OFFSET, length); from++) {
+                    byte[] data = randomBytes(length);
+                    byte[] expected = shiftScalar(data, from, length, amount);
+                    String message = "amount " + amount + ", length " + length + ", from " + from;
+                    assertArrayEquals(expected, applyToBuffer(kernel, ByteBuffer.allocateDirect(length), data, from, length), message);
+                    assertArrayEquals(expected, applyToBuffer(kernel, ByteBuffer.allocate(length), data, from, length), message);
+                }
+            }
+        }
+    }
+
+    @Test
+    void composedRotationsMatchScalarShift() {
+        for (int first = 0; first < BYTE_SIZE; first++) {
+            for (int second = 0; second < BYTE_SIZE; second++) {
+                byte[] table = ShiftKernel.compose(ShiftKernel.rotationTable(first), ShiftKernel.rotationTable(second));
+                ShiftKernel kernel = new ShiftKernel(table, true);
+                byte[] data = randomBytes(MAX_LENGTH);
+                byte[] expected = shiftScalar(data, 0, data.length, first + second);
+                kernel.apply(data, 0, data.length);
+                assertArrayEquals(expected, data, "amounts " + first + " and " + second);
+            }
+        }
+    }
+
+    @Test
+    void rightShiftMatchesScalarShift() {
+        for (int amount = 1; amount < 2 * BYTE_SIZE; amount++) {
+            ShiftKernel kernel = new ShiftKernel(ShiftKernel.rotationTable(Executor.leftShift(amount, Executor.Direction.RIGHT)), true);
+            for (int length = 0; length <= MAX_LENGTH; length++) {
+                byte[] data = randomBytes(length);
+                byte[] expected = new byte[length];
+                for (int i = 0; i < length; i++)
+                    expected[i] = shiftRight(data[i], amount);
+                kernel.apply(data, 0, length);
+                assertArrayEquals(expected, data, "amount " + amount + ", length " + length);
+            }
+        }
+    }
+
+    @Test
+    void wordwiseMatchesTableLookup() {
+        for (int amount = 0; amount < BYTE_SIZE; amount++) {
+            byte[] table = ShiftKernel.rotationTable(amount);
+            byte[] data = randomBytes(MAX_LENGTH);
+            byte[] expected = Arrays.copyOf(data, data.length);
+            new ShiftKernel(table, false).apply(expected, 0, expected.length);
+            new ShiftKernel(table, true).apply(data, 0, data.length);
+            assertArrayEquals(expected, data, "amount " + amount);
+        }
+    }
+}
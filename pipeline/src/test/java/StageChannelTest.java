@@ -0,0 +1,122 @@
+import org.junit.jupiter.api.Test;
+import ru.spbstu.pipeline.IExecutable;
+import ru.spbstu.pipeline.RC;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+//Проверка канала между модулями: производитель не должен зависать и получать успешный код,
+//если поток потребителя остановлен
+
+class StageChannelTest {
+    private final static Logger LOGGER = Logger.getLogger(StageChannelTest.class.getName());
+    private final static int CAPACITY = 4;  // - емкость канала
+    private final static Duration TIMEOUT = Duration.ofSeconds(10); // - время, за которое канал должен вернуть код
+
+    static {
+        LOGGER.setLevel(Level.OFF);
+    }
+
+    //Передача в канал порций сверх его емкости до первого неуспешного кода
+
+    private static RC fill(StageChannel channel) {
+        RC code = RC.CODE_SUCCESS;
+        for (int i = 0; i < 16 * CAPACITY && code == RC.CODE_SUCCESS; i++)
+            code = channel.execute(new byte[1]);
+        return code;
+    }
+
+    @Test
+    void stageExceptionFailsProducer() {
+        StageChannel channel = new StageChannel(LOGGER, data -> {
+            throw new IllegalStateException("stage failure");
+        }, CAPACITY);
+        channel.start();
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            assertNotEquals(RC.CODE_SUCCESS, fill(channel));
+            assertNotEquals(RC.CODE_SUCCESS, channel.join());
+        });
+    }
+
+    @Test
+    void stageErrorIsReturnedToProducer() {
+        StageChannel channel = new StageChannel(LOGGER, data -> RC.CODE_FAILED_TO_WRITE, CAPACITY);
+        channel.start();
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            assertEquals(RC.CODE_FAILED_TO_WRITE, fill(channel));
+            assertEquals(RC.CODE_FAILED_TO_WRITE, channel.join());
+        });
+    }
+
+    @Test
+    void abortedChannelRejectsPortions() {
+        CountDownLatch release = new CountDownLatch(1);
+        IExecutable blocked = data -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return RC.CODE_SUCCESS;
+        };
+        StageChannel channel = new StageChannel(LOGGER, blocked, CAPACITY);
+        channel.start();
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            assertEquals(RC.CODE_SUCCESS, channel.execute(new byte[1]));
+            channel.abort();
+            assertNotEquals(RC.CODE_SUCCESS, fill(channel));
+            release.countDown();
+            assertNotEquals(RC.CODE_SUCCESS, channel.join());
+        });
+    }
+
+    @Test
+    void flushFollowsEarlierPortions() {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        class Recording implements IExecutable, IFlushable {
+            public RC execute(byte[] data) {
+                events.add(data == null ? "end" : "data");
+                return RC.CODE_SUCCESS;
+            }
+
+            public RC flushPending() {
+                events.add("flush");
+                return RC.CODE_SUCCESS;
+            }
+        }
+        StageChannel channel = new StageChannel(LOGGER, new Recording(), CAPACITY);
+        channel.start();
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            for (int i = 0; i < 2 * CAPACITY; i++)
+                assertEquals(RC.CODE_SUCCESS, channel.execute(new byte[1]));
+            assertEquals(RC.CODE_SUCCESS, channel.flushPending());
+            assertEquals(RC.CODE_SUCCESS, channel.execute((byte[]) null));
+            assertEquals(RC.CODE_SUCCESS, channel.join());
+        });
+        List<String> expected = new ArrayList<String>(Collections.nCopies(2 * CAPACITY, "data"));
+        expected.add("flush");
+        expected.add("end");
+        assertEquals(expected, events);
+    }
+
+    @Test
+    void endOfDataCompletesSuccessfully() {
+        StageChannel channel = new StageChannel(LOGGER, data -> RC.CODE_SUCCESS, CAPACITY);
+        channel.start();
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            for (int i = 0; i < 16 * CAPACITY; i++)
+                assertEquals(RC.CODE_SUCCESS, channel.execute(new byte[1]));
+            assertEquals(RC.CODE_SUCCESS, channel.execute((byte[]) null));
+            assertEquals(RC.CODE_SUCCESS, channel.join());
+        });
+    }
+}